@@ -0,0 +1,70 @@
+package com.xlythe.math;
+
+import org.javia.arity.SyntaxException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BaseModule's conversions between bases, and the digit grouping that runs on every redraw of the display.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BaseModuleBenchmark {
+    @Param({"DECIMAL", "HEXADECIMAL", "BINARY"})
+    public Base base;
+
+    private BaseModule mBaseModule;
+    private String mDecimal;
+    private String mConverted;
+    private String mGroupable;
+
+    @Setup
+    public void setup() throws SyntaxException {
+        Solver solver = new Solver();
+        mBaseModule = solver.getBaseModule();
+
+        // A long equation with integers, fractions and numbers too wide for a long
+        StringBuilder builder = new StringBuilder();
+        for(int i = 1; i <= 20; i++) {
+            if(i > 1) builder.append(Constants.PLUS);
+            builder.append(i * 7919L * i * i);
+            if(i % 3 == 0) builder.append(".").append(i * 37);
+            if(i % 5 == 0) builder.append(Constants.MUL).append("98765432109876543210");
+        }
+        mDecimal = builder.toString();
+        mConverted = mBaseModule.changeBase(mDecimal, Base.DECIMAL, base);
+
+        mBaseModule.setBase(base);
+        mGroupable = mConverted;
+    }
+
+    @Benchmark
+    public String changeBaseFromDecimal() throws SyntaxException {
+        return mBaseModule.changeBase(mDecimal, Base.DECIMAL, base);
+    }
+
+    @Benchmark
+    public String changeBaseToDecimal() throws SyntaxException {
+        return mBaseModule.changeBase(mConverted, base, Base.DECIMAL);
+    }
+
+    @Benchmark
+    public String groupSentence() {
+        return mBaseModule.groupSentence(mGroupable, mGroupable.length() / 2);
+    }
+}
@@ -0,0 +1,123 @@
+package com.xlythe.math;
+
+import org.javia.arity.SyntaxException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting an answer for the display, which every solve() ends with.
+ *
+ * format() is DoubleFormatter, and stringFormat() is the String.format loop it replaced.
+ * Run with -prof gc (the jmh task does) to compare the bytes allocated per answer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatterBenchmark {
+    @Param({"8", "12"})
+    public int lineLength;
+
+    @Param({"INTEGERS", "FRACTIONS", "LARGE"})
+    public Values values;
+
+    private DoubleFormatter mFormatter;
+    private int mIndex;
+
+    public enum Values {
+        // Fit without any rounding, so the first precision tried works
+        INTEGERS(new double[] {0, 1, 42, -7, 1024, 65535, 99, 123456}),
+        // Need rounding, and a few precisions before they fit
+        FRACTIONS(new double[] {1.0 / 3, 2.0 / 3, Math.PI, -Math.E, 0.1 + 0.2, Math.sqrt(2), 1.0 / 7, 123.456789012}),
+        // Switch to scientific notation
+        LARGE(new double[] {1e20, -6.02214076e23, 1.0 / 3e15, 2.5e-12, 9.999999999e99, 123456789012345.0, 1e-300, Double.MAX_VALUE});
+
+        final double[] numbers;
+
+        Values(double[] numbers) {
+            this.numbers = numbers;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        mFormatter = new DoubleFormatter();
+    }
+
+    @Benchmark
+    public String format() throws SyntaxException {
+        mIndex = (mIndex + 1) % values.numbers.length;
+        return mFormatter.format(values.numbers[mIndex], lineLength);
+    }
+
+    @Benchmark
+    public String stringFormat() {
+        mIndex = (mIndex + 1) % values.numbers.length;
+        double value = values.numbers[mIndex];
+        String result = "";
+        for(int precision = lineLength; precision > 6; precision--) {
+            result = tryFormattingWithPrecision(value, lineLength, precision);
+            if(result.length() <= lineLength) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Solver's formatting before DoubleFormatter, kept here as the baseline
+     * */
+    private static String tryFormattingWithPrecision(double value, int lineLength, int precision) {
+        // The standard scientific formatter is basically what we need. We will
+        // start with what it produces and then massage it a bit.
+        String result = String.format(Locale.US, "%" + lineLength + "." + precision + "g", value);
+        String mantissa = result;
+        String exponent = null;
+        int e = result.indexOf('e');
+        if(e != -1) {
+            mantissa = result.substring(0, e);
+
+            // Strip "+" and unnecessary 0's from the exponent
+            exponent = result.substring(e + 1);
+            if(exponent.startsWith("+")) {
+                exponent = exponent.substring(1);
+            }
+            exponent = String.valueOf(Integer.parseInt(exponent));
+        }
+
+        int period = mantissa.indexOf('.');
+        if(period == -1) {
+            period = mantissa.indexOf(',');
+        }
+        if(period != -1) {
+            // Strip trailing 0's
+            while(mantissa.length() > 0 && mantissa.endsWith("0")) {
+                mantissa = mantissa.substring(0, mantissa.length() - 1);
+            }
+            if(mantissa.length() == period + 1) {
+                mantissa = mantissa.substring(0, mantissa.length() - 1);
+            }
+        }
+
+        if(exponent != null) {
+            result = mantissa + 'e' + exponent;
+        } else {
+            result = mantissa;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,104 @@
+package com.xlythe.math;
+
+import org.javia.arity.Function;
+import org.javia.arity.SyntaxException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GraphSampler, which samples an equation across the visible domain.
+ *
+ * interpretedSamples and compiledSamples are reported in samples per second, comparing
+ * parsing the equation at every sample against compiling it once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmark {
+    private static final String EQUATION = "X^3" + Constants.MINUS + "2X+sin(X)";
+    private static final int SAMPLES = 1000;
+
+    private GraphSampler mSampler;
+    private Solver mSolver;
+    private Function mFunction;
+    private final double[] mXs = new double[SAMPLES];
+
+    @Setup
+    public void setup() throws SyntaxException {
+        // A 10x10 window, like the default zoom on a phone
+        mSolver = new Solver();
+        mSampler = new GraphSampler(mSolver, -5f, 5f, -5f, 5f, 1f, null);
+        mSampler.setResolution(1080, 1080);
+        mFunction = mSolver.compile(EQUATION, "X");
+        for(int i = 0; i < SAMPLES; i++) {
+            mXs[i] = -5 + 10.0 * i / SAMPLES;
+        }
+    }
+
+    /**
+     * Y=f(X), a smooth curve that only needs a little subdivision
+     * */
+    @Benchmark
+    public PointSeries explicit() {
+        return mSampler.graph("Y", EQUATION);
+    }
+
+    /**
+     * Y=tan(X), which is subdivided near each asymptote and broken across it
+     * */
+    @Benchmark
+    public PointSeries steep() {
+        return mSampler.graph("Y", "tan(X)");
+    }
+
+    /**
+     * A circle, traced with marching squares
+     * */
+    @Benchmark
+    public PointSeries implicit() {
+        return mSampler.graph("X^2+Y^2", "16");
+    }
+
+    /**
+     * How GraphSampler used to work: define X, then parse and evaluate the equation, per sample
+     * */
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double interpretedSamples() throws SyntaxException {
+        double sum = 0;
+        mSolver.pushFrame();
+        for(double x : mXs) {
+            mSolver.define("X", x);
+            sum += mSolver.eval(EQUATION);
+        }
+        mSolver.popFrame();
+        return sum;
+    }
+
+    /**
+     * How it works now: the equation is compiled once, then evaluated per sample
+     * */
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double compiledSamples() {
+        double sum = 0;
+        for(double x : mXs) {
+            sum += mFunction.eval(x);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,117 @@
+package com.xlythe.math;
+
+import org.javia.arity.SyntaxException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MatrixModule.evaluateMatrices() from 2x2 up to 200x200, to show how each operation scales with
+ * size. Every run includes parsing the equation and printing the result, as the calculator does.
+ *
+ * ./gradlew :MathBenchmark:matrixReport writes the time and allocation per operation to a CSV.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixBenchmark {
+    @Param({"2", "10", "50", "200"})
+    public int size;
+
+    @Param({"PARSE", "ADD", "MULTIPLY", "SCALE", "POWER", "DETERMINANT", "INVERSE", "SQRT", "CBRT", "SIN"})
+    public Operation operation;
+
+    private MatrixModule mMatrixModule;
+    private String mEquation;
+
+    public enum Operation {
+        PARSE, ADD, MULTIPLY, SCALE, POWER, DETERMINANT, INVERSE, SQRT, CBRT, SIN
+    }
+
+    @Setup
+    public void setup() {
+        Solver solver = new Solver();
+        solver.setLineLength(12);
+        mMatrixModule = solver.getMatrixModule();
+
+        Random random = new Random(42);
+        String a = matrix(random, size);
+        String b = matrix(random, size);
+        switch(operation) {
+            case PARSE:
+                // Just the literal, so this is the cost of reading it in and printing it back out
+                mEquation = a;
+                break;
+            case ADD:
+                mEquation = a + Constants.PLUS + b;
+                break;
+            case MULTIPLY:
+                mEquation = a + Constants.MUL + b;
+                break;
+            case SCALE:
+                mEquation = "2.5" + Constants.MUL + a;
+                break;
+            case POWER:
+                mEquation = a + Constants.POWER + "3";
+                break;
+            case DETERMINANT:
+                mEquation = "det" + a;
+                break;
+            case INVERSE:
+                // The keypad marks inverses with a zero width no-break space
+                mEquation = a + "\uFEFF^-1";
+                break;
+            case SQRT:
+                mEquation = "\u221a" + a;
+                break;
+            case CBRT:
+                mEquation = "cbrt" + a;
+                break;
+            case SIN:
+                mEquation = "sin" + a;
+                break;
+        }
+    }
+
+    @Benchmark
+    public String evaluateMatrices() throws SyntaxException {
+        return mMatrixModule.evaluateMatrices(mEquation);
+    }
+
+    /**
+     * Returns a random symmetric matrix. Symmetric, so the eigenvalues are real and sqrt and cbrt work.
+     * */
+    private static String matrix(Random random, int size) {
+        int[][] cells = new int[size][size];
+        for(int row = 0; row < size; row++) {
+            for(int column = 0; column <= row; column++) {
+                cells[row][column] = cells[column][row] = random.nextInt(19) - 9;
+            }
+        }
+
+        StringBuilder builder = new StringBuilder("[");
+        for(int row = 0; row < size; row++) {
+            builder.append('[');
+            for(int column = 0; column < size; column++) {
+                if(column > 0) builder.append(',');
+                builder.append(cells[row][column]);
+            }
+            builder.append(']');
+        }
+        return builder.append(']').toString().replace('-', Constants.MINUS);
+    }
+}
@@ -0,0 +1,63 @@
+package com.xlythe.math;
+
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.ops.CommonOps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ejml's single threaded product against MatrixMultiplication's blocked, parallel one,
+ * on square matrices either side of the point where MatrixMultiplication switches over.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiplicationBenchmark {
+    @Param({"64", "128", "256", "512"})
+    public int size;
+
+    private DenseMatrix64F mA;
+    private DenseMatrix64F mB;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        mA = matrix(random, size);
+        mB = matrix(random, size);
+    }
+
+    @Benchmark
+    public DenseMatrix64F ejml() {
+        DenseMatrix64F c = new DenseMatrix64F(size, size);
+        CommonOps.mult(mA, mB, c);
+        return c;
+    }
+
+    @Benchmark
+    public DenseMatrix64F blocked() {
+        return MatrixMultiplication.multBlocked(mA, mB);
+    }
+
+    private static DenseMatrix64F matrix(Random random, int size) {
+        DenseMatrix64F matrix = new DenseMatrix64F(size, size);
+        for(int i = 0; i < matrix.data.length; i++) {
+            matrix.data[i] = random.nextDouble() * 2 - 1;
+        }
+        return matrix;
+    }
+}
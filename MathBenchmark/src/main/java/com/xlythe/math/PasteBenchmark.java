@@ -0,0 +1,69 @@
+package com.xlythe.math;
+
+import org.javia.arity.SyntaxException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recognizing and parsing a large pasted matrix of decimals, eg. 100x100 is 10,000 cells.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasteBenchmark {
+    @Param({"30", "100"})
+    public int size;
+
+    private Solver mSolver;
+    private MatrixModule mMatrixModule;
+    private String mEquation;
+
+    @Setup
+    public void setup() {
+        mSolver = new Solver();
+        mMatrixModule = mSolver.getMatrixModule();
+
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder("[");
+        for(int row = 0; row < size; row++) {
+            builder.append('[');
+            for(int column = 0; column < size; column++) {
+                if(column > 0) builder.append(',');
+                if(random.nextInt(3) == 0) builder.append(Constants.MINUS);
+                builder.append(random.nextInt(1000)).append('.').append(random.nextInt(100));
+            }
+            builder.append(']');
+        }
+        mEquation = builder.append(']').append(Constants.MUL).append('2').toString();
+    }
+
+    @Benchmark
+    public boolean isMatrix() {
+        return mMatrixModule.isMatrix(mEquation);
+    }
+
+    @Benchmark
+    public MatrixParser.Node parse() throws SyntaxException {
+        return new MatrixParser(mEquation.replace(Constants.MINUS, '-')).parse();
+    }
+
+    @Benchmark
+    public String solve() throws SyntaxException {
+        return mSolver.solve(mEquation);
+    }
+}
@@ -0,0 +1,149 @@
+package com.xlythe.math;
+
+import org.javia.arity.SyntaxException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.MathContext;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solver.solve(), end to end (localization, base conversion, parsing and formatting).
+ *
+ * Solver caches its answers, so the uncached benchmark cycles through more equations than the cache holds.
+ * solvePrecise() does the same with setMathContext(), at each of the precisions in Precision.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+    // More than Solver.MAX_CACHE_SIZE, so every lookup misses
+    private static final int VARIANTS = 128;
+
+    @Param({"CHAIN", "NESTED", "FUNCTIONS", "HEX"})
+    public Workload workload;
+
+    private Solver mSolver;
+    private Solver mPreciseSolver;
+    private IncrementalSolver mIncrementalSolver;
+    private String[] mEquations;
+    private String[] mKeystrokes;
+    private int mIndex;
+
+    public enum Workload {
+        // A long run of arithmetic
+        CHAIN(Base.DECIMAL, chain(40)),
+        // Functions inside functions
+        NESTED(Base.DECIMAL, "sin(cos(tan(ln(sqrt(exp(0.5)+1)+2)+3)+4))"),
+        // Every kind of function, side by side
+        FUNCTIONS(Base.DECIMAL, Solver.clean("sin(30)+cos(45)*tan(60)-ln(7)/log(3)+\u221a(2)^3+5!-atan(1)")),
+        // Hexadecimal numbers, which are converted to decimal and back
+        HEX(Base.HEXADECIMAL, Solver.clean("FF*1A+3E8/A-7D0+ABCDEF*2"));
+
+        final Base base;
+        final String equation;
+
+        Workload(Base base, String equation) {
+            this.base = base;
+            this.equation = equation;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        mSolver = new Solver();
+        mSolver.setLineLength(12);
+        mSolver.setBase(workload.base);
+        mIncrementalSolver = new IncrementalSolver(mSolver);
+
+        mPreciseSolver = new Solver();
+        mPreciseSolver.setLineLength(12);
+        mPreciseSolver.setBase(workload.base);
+
+        mEquations = new String[VARIANTS];
+        for(int i = 0; i < VARIANTS; i++) {
+            mEquations[i] = workload.equation + "+" + Integer.toString(i + 1, workload.base.getQuickSerializable()).toUpperCase(Locale.US);
+        }
+
+        // Every prefix of the equation, as if it were being typed
+        mKeystrokes = new String[workload.equation.length()];
+        for(int i = 0; i < mKeystrokes.length; i++) {
+            mKeystrokes[i] = workload.equation.substring(0, i + 1);
+        }
+    }
+
+    @Benchmark
+    public String solveUncached() throws SyntaxException {
+        mIndex = (mIndex + 1) % VARIANTS;
+        return mSolver.solve(mEquations[mIndex]);
+    }
+
+    @Benchmark
+    public String solvePrecise(Precision precision) throws SyntaxException {
+        mPreciseSolver.setMathContext(precision.mathContext);
+        mIndex = (mIndex + 1) % VARIANTS;
+        return mPreciseSolver.solve(mEquations[mIndex]);
+    }
+
+    @Benchmark
+    public String solveCached() throws SyntaxException {
+        return mSolver.solve(workload.equation);
+    }
+
+    /**
+     * Types the whole equation, solving after every keystroke like the live preview does
+     * */
+    @Benchmark
+    public int typeEquation() {
+        mSolver.clearCache();
+        mIncrementalSolver.reset();
+        int length = 0;
+        for(String keystrokes : mKeystrokes) {
+            try {
+                length += mIncrementalSolver.solve(keystrokes).length();
+            } catch(SyntaxException e) {
+                // Half typed equations (eg. "sin(") are expected to fail
+            }
+        }
+        return length;
+    }
+
+    /**
+     * The number of significant digits solvePrecise() works to
+     * */
+    @State(Scope.Thread)
+    public static class Precision {
+        @Param({"16", "32", "100"})
+        public int digits;
+
+        MathContext mathContext;
+
+        @Setup
+        public void setup() {
+            mathContext = new MathContext(digits);
+        }
+    }
+
+    private static String chain(int terms) {
+        StringBuilder builder = new StringBuilder();
+        char[] operators = {Constants.PLUS, Constants.MUL, Constants.MINUS, Constants.DIV};
+        for(int i = 1; i <= terms; i++) {
+            if(i > 1) builder.append(operators[i % operators.length]);
+            builder.append(i).append('.').append(i % 10);
+        }
+        return builder.toString();
+    }
+}
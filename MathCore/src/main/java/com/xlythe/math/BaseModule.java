@@ -0,0 +1,344 @@
+package com.xlythe.math;
+
+import org.javia.arity.SyntaxException;
+
+import java.math.BigInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class BaseModule extends Module {
+    private static final Logger LOGGER = Logger.getLogger("Calculator");
+
+    // Used to keep a reference to the cursor in text
+    public static final char SELECTION_HANDLE = '\u2620';
+
+    // How many decimal places to approximate base changes
+    private final static int PRECISION = 8;
+
+    // The current base. Defaults to decimal.
+    private Base mBase = Base.DECIMAL;
+
+    // A listener for when the base changes.
+    private OnBaseChangeListener mBaseChangeListener;
+
+    BaseModule(Solver solver) {
+        super(solver);
+    }
+
+    public Base getBase() {
+        return mBase;
+    }
+
+    public void setBase(Base base) {
+        mBase = base;
+        if(mBaseChangeListener != null) mBaseChangeListener.onBaseChange(mBase);
+    }
+
+    public String setBase(String input, Base base) throws SyntaxException {
+        String text = changeBase(input, mBase, base);
+        setBase(base);
+        return text;
+    }
+
+    /**
+     * Updates the text to the new base. This does not set the active base.
+     * */
+    String changeBase(String text, Base base) throws SyntaxException {
+        return changeBase(text, Base.DECIMAL, base);
+    }
+
+    /**
+     * Updates the text to the new base. This does not set the active base.
+     * */
+    String changeBase(final String originalText, final Base oldBase, final Base newBase) throws SyntaxException {
+        if(oldBase.equals(newBase) || originalText.isEmpty()) {
+            return originalText;
+        }
+
+        // Copy the operations over as-is, and translate the numbers between them
+        final int length = originalText.length();
+        StringBuilder text = new StringBuilder(length + 16);
+        int i = 0;
+        while(i < length) {
+            if(!isNumber(originalText.charAt(i))) {
+                text.append(originalText.charAt(i++));
+                continue;
+            }
+
+            int end = i + 1;
+            while(end < length && isNumber(originalText.charAt(end))) {
+                end++;
+            }
+            try {
+                newBase(originalText, i, end, oldBase.getQuickSerializable(), newBase.getQuickSerializable(), text);
+            } catch(NumberFormatException e) {
+                LOGGER.log(Level.SEVERE, originalText.substring(i, end) + " is not a number", e);
+                throw new SyntaxException();
+            }
+            i = end;
+        }
+        return text.toString();
+    }
+
+    /**
+     * Converts the number text[start, end) from one base to another and appends it to the output.
+     * */
+    private void newBase(String text, int start, int end, int originalBase, int base, StringBuilder output) {
+        final char decimalPoint = getDecimalPoint();
+
+        // Only the digits up until the second decimal point (if any) count
+        int point = indexOf(text, decimalPoint, start, end);
+        int wholeEnd = point == -1 ? end : point;
+        int fractionStart = point == -1 ? end : point + 1;
+        int fractionEnd = indexOf(text, decimalPoint, fractionStart, end);
+        if(fractionEnd == -1) {
+            fractionEnd = end;
+        }
+        boolean hasFraction = false;
+        for(int i = fractionStart; i < end; i++) {
+            if(text.charAt(i) != decimalPoint) {
+                hasFraction = true;
+                break;
+            }
+        }
+
+        int mark = output.length();
+        if(wholeEnd - start <= maxLongDigits(originalBase)) {
+            long wholeNumber = start == wholeEnd ? 0 : parseLong(text, start, wholeEnd, originalBase);
+            appendLong(output, wholeNumber, base);
+        } else {
+            // Too big for a long (eg. a 128 bit mask in hex)
+            output.append(new BigInteger(text.substring(start, wholeEnd), originalBase).toString(base));
+            toUpperCase(output, mark);
+        }
+        if(!hasFraction) return;
+
+        // Catch overflow (it's a decimal, it can be (slightly) rounded
+        if(fractionEnd - fractionStart > 13) {
+            fractionEnd = fractionStart + 13;
+        }
+
+        double decimal = 0;
+        if(originalBase != 10) {
+            // At most 13 digits, so this fits in a long (and is exact as a double for bin and hex)
+            decimal = parseLong(text, fractionStart, fractionEnd, originalBase) / Math.pow(originalBase, fractionEnd - fractionStart);
+        } else {
+            decimal = Double.parseDouble("0." + text.substring(fractionStart, fractionEnd));
+        }
+        if(decimal == 0) return;
+
+        output.append(decimalPoint);
+        for(int i = 0; decimal != 0 && i <= PRECISION; i++) {
+            decimal *= base;
+            int id = (int) Math.floor(decimal);
+            decimal -= id;
+            output.append(Integer.toHexString(id));
+        }
+        toUpperCase(output, mark);
+    }
+
+    /**
+     * Long.parseLong(text.substring(start, end), radix), without the substring
+     * */
+    private static long parseLong(CharSequence text, int start, int end, int radix) {
+        if(start == end) {
+            throw new NumberFormatException("Empty number");
+        }
+        long limit = Long.MAX_VALUE / radix;
+        long result = 0;
+        for(int i = start; i < end; i++) {
+            int digit = Character.digit(text.charAt(i), radix);
+            if(digit < 0 || result > limit || result * radix > Long.MAX_VALUE - digit) {
+                throw new NumberFormatException("For input string: \"" + text.subSequence(start, end) + "\"");
+            }
+            result = result * radix + digit;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the most digits that are guaranteed to fit in a long
+     * */
+    private static int maxLongDigits(int radix) {
+        switch(radix) {
+            case 2:
+                return 63;
+            case 16:
+                return 15;
+            default:
+                return 18;
+        }
+    }
+
+    /**
+     * Appends a non-negative number, in upper case, in the given radix
+     * */
+    private static void appendLong(StringBuilder output, long number, int radix) {
+        if(number == 0) {
+            output.append('0');
+            return;
+        }
+        int mark = output.length();
+        while(number > 0) {
+            output.append(Character.toUpperCase(Character.forDigit((int) (number % radix), radix)));
+            number /= radix;
+        }
+        reverse(output, mark);
+    }
+
+    public String groupSentence(String originalText, int selectionHandle) {
+        // A lone operator has nowhere to put the selection handle
+        if(originalText.isEmpty() || (originalText.length() == 1 && !isNumber(originalText.charAt(0)))) {
+            return originalText;
+        }
+
+        StringBuilder source = new StringBuilder(originalText.length() + 1).append(originalText);
+        if(selectionHandle >= 0 && selectionHandle <= originalText.length()) {
+            source.insert(selectionHandle, SELECTION_HANDLE);
+        }
+
+        final int length = source.length();
+        StringBuilder text = new StringBuilder(length + length / 2);
+        int i = 0;
+        while(i < length) {
+            if(!isNumber(source.charAt(i))) {
+                text.append(source.charAt(i++));
+                continue;
+            }
+
+            int end = i + 1;
+            while(end < length && isNumber(source.charAt(end))) {
+                end++;
+            }
+            groupDigits(source, i, end, mBase, text);
+            i = end;
+        }
+        return text.toString();
+    }
+
+    public String groupDigits(String number, Base base) {
+        StringBuilder text = new StringBuilder(number.length() + number.length() / 2);
+        groupDigits(number, 0, number.length(), base, text);
+        return text.toString();
+    }
+
+    /**
+     * Groups the whole part of number[start, end) and appends it to the output.
+     * */
+    private void groupDigits(CharSequence number, int start, int end, Base base, StringBuilder output) {
+        if(start < end && (number.charAt(start) == Constants.MINUS || number.charAt(start) == '-')) {
+            output.append(Constants.MINUS);
+            start++;
+        }
+
+        // We only group the whole number
+        final char decimalPoint = getDecimalPoint();
+        int point = indexOf(number, decimalPoint, start, end);
+        if(point == start) {
+            output.append(number, start, end);
+            return;
+        }
+
+        group(number, start, point == -1 ? end : point, getSeparatorDistance(base), getSeparator(base), output);
+
+        // Anything after a second decimal point is dropped
+        if(point != -1) {
+            int next = indexOf(number, decimalPoint, point + 1, end);
+            output.append(number, point, next == -1 ? end : next);
+        }
+    }
+
+    private void group(CharSequence wholeNumber, int start, int end, int spacing, char separator, StringBuilder output) {
+        // Written backwards, then flipped around
+        int mark = output.length();
+        int digitsSeen = 0;
+
+        for (int i = end-1; i >= start; --i) {
+            char curChar = wholeNumber.charAt(i);
+            output.append(curChar);
+            if (curChar != SELECTION_HANDLE && i != start && !(i == start+1 && wholeNumber.charAt(start) == SELECTION_HANDLE)) {
+                ++digitsSeen;
+                if (digitsSeen > 0 && digitsSeen % spacing == 0) {
+                    output.append(separator);
+                }
+            }
+        }
+        reverse(output, mark);
+    }
+
+    /**
+     * Returns true if the character belongs to a number (digits, separators and the selection handle)
+     * */
+    private boolean isNumber(char c) {
+        return (c >= '0' && c <= '9')
+                || (c >= 'A' && c <= 'F')
+                || c == getDecimalPoint()
+                || c == getDecSeparator()
+                || c == getBinSeparator()
+                || c == getHexSeparator()
+                || c == SELECTION_HANDLE;
+    }
+
+    private static int indexOf(CharSequence text, char c, int start, int end) {
+        for(int i = start; i < end; i++) {
+            if(text.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static void reverse(StringBuilder text, int start) {
+        for(int i = start, j = text.length() - 1; i < j; i++, j--) {
+            char c = text.charAt(i);
+            text.setCharAt(i, text.charAt(j));
+            text.setCharAt(j, c);
+        }
+    }
+
+    private static void toUpperCase(StringBuilder text, int start) {
+        for(int i = start; i < text.length(); i++) {
+            text.setCharAt(i, Character.toUpperCase(text.charAt(i)));
+        }
+    }
+
+    public char getSeparator(Base base) {
+        switch(base) {
+            case DECIMAL:
+                return getDecSeparator();
+            case BINARY:
+                return getBinSeparator();
+            case HEXADECIMAL:
+                return getHexSeparator();
+            default:
+                return 0;
+        }
+    }
+
+    public char getSeparator() {
+        return getSeparator(mBase);
+    }
+
+    private int getSeparatorDistance(Base base) {
+        switch(base) {
+            case DECIMAL:
+                return getDecSeparatorDistance();
+            case BINARY:
+                return getBinSeparatorDistance();
+            case HEXADECIMAL:
+                return getHexSeparatorDistance();
+            default:
+                return -1;
+        }
+    }
+
+    public OnBaseChangeListener getOnBaseChangeListener() {
+        return mBaseChangeListener;
+    }
+
+    public void setOnBaseChangeListener(OnBaseChangeListener l) {
+        mBaseChangeListener = l;
+    }
+
+    public static interface OnBaseChangeListener {
+        public void onBaseChange(Base newBase);
+    }
+}
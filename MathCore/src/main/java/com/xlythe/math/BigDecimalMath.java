@@ -0,0 +1,519 @@
+package com.xlythe.math;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Elementary functions for BigDecimal, accurate to the precision of the MathContext given.
+ *
+ * Anything without a real answer (eg. ln(-1)), or too large to represent, throws an ArithmeticException.
+ */
+final class BigDecimalMath {
+    // Extra digits carried through every calculation, so rounding doesn't creep into the result
+    private static final int GUARD_DIGITS = 10;
+
+    // The biggest argument we'll reduce for sin/cos/tan, in digits before the decimal point
+    private static final int MAX_TRIG_MAGNITUDE = 1000;
+
+    // The biggest |x| we'll take e^x of. Anything bigger can't be represented by BigDecimal.
+    private static final BigDecimal MAX_EXP = BigDecimal.valueOf(1000000000L);
+
+    // The biggest n we'll take n! of
+    private static final int MAX_FACTORIAL = 10000;
+
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+    private static final BigDecimal THREE = BigDecimal.valueOf(3);
+    private static final BigDecimal ONE_TENTH = new BigDecimal("0.1");
+    private static final BigDecimal SQRT_HALF = new BigDecimal("0.7071067811865475");
+    private static final BigDecimal SQRT_TWO = new BigDecimal("1.4142135623730951");
+
+    // Constants, kept at the highest precision asked for so far
+    private static volatile BigDecimal sPi;
+    private static volatile BigDecimal sLn2;
+    private static volatile BigDecimal sLn10;
+
+    private BigDecimalMath() {}
+
+    public static BigDecimal pi(MathContext mc) {
+        BigDecimal pi = sPi;
+        if(pi == null || pi.precision() < mc.getPrecision()) {
+            // Machin's formula: pi = 16 atan(1/5) - 4 atan(1/239)
+            MathContext work = work(mc);
+            pi = atanOfInverse(5, work).multiply(BigDecimal.valueOf(16))
+                    .subtract(atanOfInverse(239, work).multiply(BigDecimal.valueOf(4)), work);
+            sPi = pi = pi.round(mc);
+        }
+        return pi.round(mc);
+    }
+
+    public static BigDecimal e(MathContext mc) {
+        return exp(BigDecimal.ONE, mc);
+    }
+
+    public static BigDecimal sqrt(BigDecimal x, MathContext mc) {
+        if(x.signum() < 0) {
+            throw new ArithmeticException("Square root of a negative number");
+        }
+        if(x.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+
+        // Start from the double closest to the answer. Shift by an even power of 10 first so it fits in a double.
+        int shift = floorDiv(exponent(x), 2);
+        BigDecimal guess = new BigDecimal(Math.sqrt(x.movePointLeft(2 * shift).doubleValue())).movePointRight(shift);
+
+        // Newton's method doubles the number of correct digits each step
+        int precision = mc.getPrecision() + GUARD_DIGITS;
+        BigDecimal result = guess;
+        for(int digits = 15; ; digits *= 2) {
+            MathContext step = new MathContext(Math.min(2 * digits, precision));
+            result = x.divide(result, step).add(result, step).divide(TWO, step);
+            if(2 * digits >= precision) break;
+        }
+        return result.round(mc);
+    }
+
+    public static BigDecimal cbrt(BigDecimal x, MathContext mc) {
+        if(x.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+        if(x.signum() < 0) {
+            return cbrt(x.negate(), mc).negate();
+        }
+
+        int shift = floorDiv(exponent(x), 3);
+        BigDecimal guess = new BigDecimal(Math.cbrt(x.movePointLeft(3 * shift).doubleValue())).movePointRight(shift);
+
+        int precision = mc.getPrecision() + GUARD_DIGITS;
+        BigDecimal result = guess;
+        for(int digits = 15; ; digits *= 2) {
+            MathContext step = new MathContext(Math.min(2 * digits, precision));
+            BigDecimal square = result.multiply(result, step);
+            result = result.multiply(TWO).add(x.divide(square, step), step).divide(THREE, step);
+            if(2 * digits >= precision) break;
+        }
+        return result.round(mc);
+    }
+
+    public static BigDecimal exp(BigDecimal x, MathContext mc) {
+        if(x.signum() == 0) {
+            return BigDecimal.ONE;
+        }
+        if(x.abs().compareTo(MAX_EXP) > 0) {
+            throw new ArithmeticException("Overflow");
+        }
+
+        // e^x = (e^(x/2^k))^(2^k). Halve x until the Taylor series converges quickly,
+        // and carry enough extra digits to survive squaring the result k times.
+        int halvings = x.abs().toBigInteger().bitLength() + 8;
+        MathContext work = new MathContext(mc.getPrecision() + GUARD_DIGITS + halvings / 3);
+        BigDecimal r = x.divide(new BigDecimal(BigInteger.ONE.shiftLeft(halvings)), work);
+
+        BigDecimal epsilon = BigDecimal.ONE.movePointLeft(work.getPrecision() + 1);
+        BigDecimal sum = BigDecimal.ONE;
+        BigDecimal term = BigDecimal.ONE;
+        for(int i = 1; ; i++) {
+            term = term.multiply(r, work).divide(BigDecimal.valueOf(i), work);
+            if(term.abs().compareTo(epsilon) < 0) break;
+            sum = sum.add(term, work);
+        }
+
+        for(int i = 0; i < halvings; i++) {
+            sum = sum.multiply(sum, work);
+        }
+        return sum.round(mc);
+    }
+
+    public static BigDecimal ln(BigDecimal x, MathContext mc) {
+        if(x.signum() <= 0) {
+            throw new ArithmeticException("Logarithm of a non-positive number");
+        }
+        if(x.compareTo(BigDecimal.ONE) == 0) {
+            return BigDecimal.ZERO;
+        }
+
+        // x = m * 2^twos * 10^tens, with m close to 1 so the series converges quickly.
+        // Only one of twos/tens is non zero when x is near 1, so there's no cancellation.
+        MathContext work = work(mc);
+        int tens = exponent(x);
+        BigDecimal m = x.movePointLeft(tens);
+        if(m.compareTo(THREE) > 0) {
+            m = m.movePointLeft(1);
+            tens++;
+        }
+        int twos = 0;
+        while(m.compareTo(SQRT_TWO) > 0) {
+            m = m.divide(TWO);
+            twos++;
+        }
+        while(m.compareTo(SQRT_HALF) < 0) {
+            m = m.multiply(TWO);
+            twos--;
+        }
+
+        BigDecimal result = lnNearOne(m, work);
+        if(twos != 0) {
+            result = result.add(ln2(work).multiply(BigDecimal.valueOf(twos)), work);
+        }
+        if(tens != 0) {
+            result = result.add(ln10(work).multiply(BigDecimal.valueOf(tens)), work);
+        }
+        return result.round(mc);
+    }
+
+    public static BigDecimal log10(BigDecimal x, MathContext mc) {
+        MathContext work = work(mc);
+        return ln(x, work).divide(ln10(work), mc);
+    }
+
+    public static BigDecimal log2(BigDecimal x, MathContext mc) {
+        MathContext work = work(mc);
+        return ln(x, work).divide(ln2(work), mc);
+    }
+
+    public static BigDecimal pow(BigDecimal x, BigDecimal y, MathContext mc) {
+        if(y.signum() == 0) {
+            return BigDecimal.ONE;
+        }
+
+        // Integer powers are exact(ish), and work for negative bases
+        if(isInteger(y) && y.abs().compareTo(BigDecimal.valueOf(999999999)) <= 0) {
+            return x.pow(y.intValue(), work(mc)).round(mc);
+        }
+
+        if(x.signum() < 0) {
+            throw new ArithmeticException("Complex result");
+        }
+        if(x.signum() == 0) {
+            if(y.signum() < 0) throw new ArithmeticException("Division by zero");
+            return BigDecimal.ZERO;
+        }
+
+        // x^y = e^(y ln x). The error in ln x grows with y, so make up for it with more digits.
+        MathContext work = work(mc);
+        BigDecimal exponent = y.multiply(ln(x, work), work);
+        int extra = Math.max(0, exponent(exponent) + 1);
+        if(extra > 0) {
+            work = new MathContext(work.getPrecision() + extra);
+            exponent = y.multiply(ln(x, work), work);
+        }
+        return exp(exponent, work).round(mc);
+    }
+
+    public static BigDecimal factorial(BigDecimal x, MathContext mc) {
+        if(!isInteger(x) || x.signum() < 0) {
+            // Arity uses the gamma function here. We don't.
+            throw new ArithmeticException("Factorial of a non-natural number");
+        }
+        if(x.compareTo(BigDecimal.valueOf(MAX_FACTORIAL)) > 0) {
+            throw new ArithmeticException("Overflow");
+        }
+
+        MathContext work = work(mc);
+        int n = x.intValue();
+        BigDecimal result = BigDecimal.ONE;
+        for(int i = 2; i <= n; i++) {
+            result = result.multiply(BigDecimal.valueOf(i), work);
+        }
+        return result.round(mc);
+    }
+
+    public static BigDecimal sin(BigDecimal x, MathContext mc) {
+        MathContext work = work(mc);
+        BigDecimal r = reduceAngle(x, work);
+        BigDecimal square = r.multiply(r, work);
+        BigDecimal epsilon = BigDecimal.ONE.movePointLeft(work.getPrecision() + 1);
+
+        // r - r^3/3! + r^5/5! - ...
+        BigDecimal sum = r;
+        BigDecimal term = r;
+        for(int i = 2; ; i += 2) {
+            term = term.multiply(square, work).divide(BigDecimal.valueOf((long) i * (i + 1)), work).negate();
+            if(term.abs().compareTo(epsilon) < 0) break;
+            sum = sum.add(term, work);
+        }
+        return sum.round(mc);
+    }
+
+    public static BigDecimal cos(BigDecimal x, MathContext mc) {
+        MathContext work = work(mc);
+        BigDecimal r = reduceAngle(x, work);
+        BigDecimal square = r.multiply(r, work);
+        BigDecimal epsilon = BigDecimal.ONE.movePointLeft(work.getPrecision() + 1);
+
+        // 1 - r^2/2! + r^4/4! - ...
+        BigDecimal sum = BigDecimal.ONE;
+        BigDecimal term = BigDecimal.ONE;
+        for(int i = 1; ; i += 2) {
+            term = term.multiply(square, work).divide(BigDecimal.valueOf((long) i * (i + 1)), work).negate();
+            if(term.abs().compareTo(epsilon) < 0) break;
+            sum = sum.add(term, work);
+        }
+        return sum.round(mc);
+    }
+
+    public static BigDecimal tan(BigDecimal x, MathContext mc) {
+        MathContext work = work(mc);
+        return sin(x, work).divide(cos(x, work), mc);
+    }
+
+    public static BigDecimal asin(BigDecimal x, MathContext mc) {
+        int compare = x.abs().compareTo(BigDecimal.ONE);
+        if(compare > 0) {
+            throw new ArithmeticException("Complex result");
+        }
+        MathContext work = work(mc);
+        if(compare == 0) {
+            BigDecimal halfPi = pi(work).divide(TWO, mc);
+            return x.signum() < 0 ? halfPi.negate() : halfPi;
+        }
+        // 1 - x^2 is exact, so there's no cancellation near +/-1
+        BigDecimal cos = sqrt(BigDecimal.ONE.subtract(x.multiply(x)), work);
+        return atan(x.divide(cos, work), mc);
+    }
+
+    public static BigDecimal acos(BigDecimal x, MathContext mc) {
+        if(x.abs().compareTo(BigDecimal.ONE) > 0) {
+            throw new ArithmeticException("Complex result");
+        }
+        MathContext work = work(mc);
+        if(x.compareTo(BigDecimal.ONE.negate()) == 0) {
+            return pi(mc);
+        }
+        // acos(x) = 2 atan(sqrt((1 - x) / (1 + x))), which is accurate near both ends
+        BigDecimal ratio = BigDecimal.ONE.subtract(x).divide(BigDecimal.ONE.add(x), work);
+        return atan(sqrt(ratio, work), work).multiply(TWO).round(mc);
+    }
+
+    public static BigDecimal atan(BigDecimal x, MathContext mc) {
+        if(x.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+        if(x.signum() < 0) {
+            return atan(x.negate(), mc).negate();
+        }
+
+        MathContext work = work(mc);
+
+        // atan(x) = pi/2 - atan(1/x)
+        boolean inverted = x.compareTo(BigDecimal.ONE) > 0;
+        if(inverted) {
+            x = BigDecimal.ONE.divide(x, work);
+        }
+
+        // atan(x) = 2 atan(x / (1 + sqrt(1 + x^2))). Shrink x until the series converges quickly.
+        int doublings = 0;
+        while(x.compareTo(ONE_TENTH) > 0) {
+            x = x.divide(BigDecimal.ONE.add(sqrt(BigDecimal.ONE.add(x.multiply(x, work)), work)), work);
+            doublings++;
+        }
+
+        // x - x^3/3 + x^5/5 - ...
+        BigDecimal square = x.multiply(x, work);
+        BigDecimal epsilon = x.movePointLeft(work.getPrecision() + 1);
+        BigDecimal sum = x;
+        BigDecimal power = x;
+        for(int i = 3; ; i += 2) {
+            power = power.multiply(square, work).negate();
+            BigDecimal term = power.divide(BigDecimal.valueOf(i), work);
+            if(term.abs().compareTo(epsilon) < 0) break;
+            sum = sum.add(term, work);
+        }
+        sum = sum.multiply(new BigDecimal(BigInteger.ONE.shiftLeft(doublings)));
+
+        if(inverted) {
+            sum = pi(work).divide(TWO, work).subtract(sum, work);
+        }
+        return sum.round(mc);
+    }
+
+    public static BigDecimal sinh(BigDecimal x, MathContext mc) {
+        if(x.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+        MathContext work = work(mc);
+        if(x.abs().compareTo(BigDecimal.ONE) < 0) {
+            // x + x^3/3! + x^5/5! + ..., which doesn't cancel like e^x - e^-x does for small x
+            BigDecimal square = x.multiply(x, work);
+            BigDecimal epsilon = x.abs().movePointLeft(work.getPrecision() + 1);
+            BigDecimal sum = x;
+            BigDecimal term = x;
+            for(int i = 2; ; i += 2) {
+                term = term.multiply(square, work).divide(BigDecimal.valueOf((long) i * (i + 1)), work);
+                if(term.abs().compareTo(epsilon) < 0) break;
+                sum = sum.add(term, work);
+            }
+            return sum.round(mc);
+        }
+        BigDecimal exp = exp(x, work);
+        return exp.subtract(BigDecimal.ONE.divide(exp, work), work).divide(TWO, mc);
+    }
+
+    public static BigDecimal cosh(BigDecimal x, MathContext mc) {
+        MathContext work = work(mc);
+        BigDecimal exp = exp(x, work);
+        return exp.add(BigDecimal.ONE.divide(exp, work), work).divide(TWO, mc);
+    }
+
+    public static BigDecimal tanh(BigDecimal x, MathContext mc) {
+        // Past this point, tanh(x) = +/-(1 - 2e^-2|x|) rounds to +/-1 (ln(10) / 2 < 1.2)
+        if(x.abs().compareTo(BigDecimal.valueOf(mc.getPrecision() * 6 / 5 + GUARD_DIGITS)) > 0) {
+            return BigDecimal.valueOf(x.signum());
+        }
+        MathContext work = work(mc);
+        return sinh(x, work).divide(cosh(x, work), mc);
+    }
+
+    public static BigDecimal asinh(BigDecimal x, MathContext mc) {
+        if(x.signum() < 0) {
+            return asinh(x.negate(), mc).negate();
+        }
+        MathContext work = work(mc);
+        BigDecimal root = sqrt(x.multiply(x).add(BigDecimal.ONE), work);
+        if(x.compareTo(BigDecimal.ONE) < 0) {
+            return atanh(x.divide(root, work), mc);
+        }
+        return ln(x.add(root), mc);
+    }
+
+    public static BigDecimal acosh(BigDecimal x, MathContext mc) {
+        int compare = x.compareTo(BigDecimal.ONE);
+        if(compare < 0) {
+            throw new ArithmeticException("Complex result");
+        }
+        if(compare == 0) {
+            return BigDecimal.ZERO;
+        }
+        MathContext work = work(mc);
+        return ln(x.add(sqrt(x.multiply(x).subtract(BigDecimal.ONE), work)), mc);
+    }
+
+    public static BigDecimal atanh(BigDecimal x, MathContext mc) {
+        if(x.abs().compareTo(BigDecimal.ONE) >= 0) {
+            throw new ArithmeticException("Complex result");
+        }
+        if(x.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+        MathContext work = work(mc);
+        if(x.abs().compareTo(new BigDecimal("0.5")) < 0) {
+            return atanhSeries(x, work).round(mc);
+        }
+        // 1/2 ln((1 + x) / (1 - x))
+        BigDecimal ratio = BigDecimal.ONE.add(x).divide(BigDecimal.ONE.subtract(x), work);
+        return ln(ratio, work).divide(TWO, mc);
+    }
+
+    public static boolean isInteger(BigDecimal x) {
+        return x.signum() == 0 || x.scale() <= 0 || x.stripTrailingZeros().scale() <= 0;
+    }
+
+    /**
+     * Returns n such that 10^n <= |x| < 10^(n+1)
+     * */
+    static int exponent(BigDecimal x) {
+        return x.precision() - x.scale() - 1;
+    }
+
+    private static MathContext work(MathContext mc) {
+        return new MathContext(mc.getPrecision() + GUARD_DIGITS);
+    }
+
+    private static int floorDiv(int a, int b) {
+        int result = a / b;
+        if((a % b != 0) && ((a < 0) != (b < 0))) {
+            result--;
+        }
+        return result;
+    }
+
+    /**
+     * Returns x - 2 pi n, between -pi and pi
+     * */
+    private static BigDecimal reduceAngle(BigDecimal x, MathContext work) {
+        int magnitude = Math.max(0, exponent(x) + 1);
+        if(magnitude > MAX_TRIG_MAGNITUDE) {
+            throw new ArithmeticException("Argument too large");
+        }
+        if(magnitude == 0) {
+            return x;
+        }
+
+        // pi needs as many extra digits as x has before the decimal point, or they're lost in the subtraction
+        MathContext precise = new MathContext(work.getPrecision() + magnitude);
+        BigDecimal twoPi = pi(precise).multiply(TWO);
+        BigDecimal turns = x.divide(twoPi, precise).setScale(0, RoundingMode.HALF_EVEN);
+        return x.subtract(twoPi.multiply(turns), precise).round(work);
+    }
+
+    /**
+     * Returns ln(x) for x close to 1 (between sqrt(1/2) and sqrt(2))
+     * */
+    private static BigDecimal lnNearOne(BigDecimal x, MathContext work) {
+        if(x.compareTo(BigDecimal.ONE) == 0) {
+            return BigDecimal.ZERO;
+        }
+        // ln(x) = 2 atanh((x - 1) / (x + 1))
+        BigDecimal z = x.subtract(BigDecimal.ONE).divide(x.add(BigDecimal.ONE), work);
+        return atanhSeries(z, work).multiply(TWO);
+    }
+
+    /**
+     * z + z^3/3 + z^5/5 + ..., for |z| < 1
+     * */
+    private static BigDecimal atanhSeries(BigDecimal z, MathContext work) {
+        BigDecimal square = z.multiply(z, work);
+        BigDecimal epsilon = z.abs().movePointLeft(work.getPrecision() + 1);
+        BigDecimal sum = z;
+        BigDecimal power = z;
+        for(int i = 3; ; i += 2) {
+            power = power.multiply(square, work);
+            BigDecimal term = power.divide(BigDecimal.valueOf(i), work);
+            if(term.abs().compareTo(epsilon) < 0) break;
+            sum = sum.add(term, work);
+        }
+        return sum;
+    }
+
+    /**
+     * atan(1/n), for an integer n > 1
+     * */
+    private static BigDecimal atanOfInverse(int n, MathContext work) {
+        BigDecimal square = BigDecimal.valueOf((long) n * n);
+        BigDecimal power = BigDecimal.ONE.divide(BigDecimal.valueOf(n), work);
+        BigDecimal epsilon = BigDecimal.ONE.movePointLeft(work.getPrecision() + 1);
+        BigDecimal sum = power;
+        for(int i = 3; ; i += 2) {
+            power = power.divide(square, work).negate();
+            BigDecimal term = power.divide(BigDecimal.valueOf(i), work);
+            if(term.abs().compareTo(epsilon) < 0) break;
+            sum = sum.add(term, work);
+        }
+        return sum;
+    }
+
+    private static BigDecimal ln2(MathContext mc) {
+        BigDecimal ln2 = sLn2;
+        if(ln2 == null || ln2.precision() < mc.getPrecision()) {
+            // ln(2) = 2 atanh(1/3)
+            MathContext work = work(mc);
+            ln2 = atanhSeries(BigDecimal.ONE.divide(THREE, work), work).multiply(TWO);
+            sLn2 = ln2 = ln2.round(mc);
+        }
+        return ln2.round(mc);
+    }
+
+    private static BigDecimal ln10(MathContext mc) {
+        BigDecimal ln10 = sLn10;
+        if(ln10 == null || ln10.precision() < mc.getPrecision()) {
+            // ln(10) = 3 ln(2) + ln(1.25), and ln(1.25) = 2 atanh(1/9)
+            MathContext work = work(mc);
+            BigDecimal ln125 = atanhSeries(BigDecimal.ONE.divide(BigDecimal.valueOf(9), work), work).multiply(TWO);
+            ln10 = ln2(work).multiply(THREE).add(ln125, work);
+            sLn10 = ln10 = ln10.round(mc);
+        }
+        return ln10.round(mc);
+    }
+}
@@ -0,0 +1,380 @@
+package com.xlythe.math;
+
+import org.javia.arity.SyntaxException;
+
+import java.math.BigDecimal;
+
+/**
+ * Formats results for the display.
+ *
+ * Gives the same output as String.format(Locale.US, "%{width}.{precision}g", value) with the
+ * trailing zeros (and exponent padding) stripped, but writes into reused buffers instead of
+ * creating a handful of Strings per attempt. The digits are only generated once per value,
+ * no matter how many precisions we have to try before the result fits.
+ *
+ * Also formats BigDecimals (for the precise engine) the same way, with as many digits as they carry.
+ *
+ * Not thread safe.
+ */
+class DoubleFormatter {
+    private static final char[] INFINITY = "Infinity".toCharArray();
+
+    // Holds Double.toString(value), which is parsed into mDigits
+    private final StringBuilder mScratch = new StringBuilder(32);
+
+    // The shortest digits that uniquely identify the value, ie. value = 0.{mDigits} * 10^mExponent
+    private char[] mDigits = new char[32];
+    private int mDigitCount;
+    private int mExponent;
+    private boolean mNegative;
+    private boolean mNaN;
+    private boolean mInfinite;
+
+    // mDigits, rounded to the current precision
+    private char[] mRounded = new char[32];
+
+    // The mantissa, before being padded and trimmed
+    private char[] mMantissa = new char[32];
+    private int mMantissaLength;
+
+    // The final result
+    private char[] mOutput = new char[32];
+    private int mOutputLength;
+
+    /**
+     * Formats the value with as much precision as will fit within the line length.
+     * Returns an empty string if the line length is too short to fit anything.
+     * */
+    String format(double value, int lineLength) throws SyntaxException {
+        load(value);
+        return formatToFit(lineLength);
+    }
+
+    /**
+     * Formats the value with as much precision as will fit within the line length.
+     * Returns an empty string if the line length is too short to fit anything.
+     * */
+    String format(BigDecimal value, int lineLength) throws SyntaxException {
+        load(value);
+        return formatToFit(lineLength);
+    }
+
+    /**
+     * Formats the value with exactly the given precision.
+     * */
+    String format(double value, int width, int precision) throws SyntaxException {
+        load(value);
+        formatWithPrecision(width, precision);
+        return new String(mOutput, 0, mOutputLength);
+    }
+
+    private String formatToFit(int lineLength) throws SyntaxException {
+        mOutputLength = 0;
+        for(int precision = lineLength; precision > 6; precision--) {
+            formatWithPrecision(lineLength, precision);
+            if(mOutputLength <= lineLength) {
+                break;
+            }
+        }
+        return new String(mOutput, 0, mOutputLength);
+    }
+
+    /**
+     * Parses the shortest representation of the value into mDigits and mExponent
+     * */
+    private void load(double value) {
+        mNegative = Double.compare(value, 0.0) < 0;
+        mNaN = Double.isNaN(value);
+        mInfinite = Double.isInfinite(value);
+        mDigitCount = 0;
+        mExponent = 0;
+        if(mNaN || mInfinite || value == 0) {
+            return;
+        }
+
+        mScratch.setLength(0);
+        mScratch.append(Math.abs(value));
+
+        int wholeDigits = -1;
+        int exponent = 0;
+        int leadingZeros = 0;
+        int length = mScratch.length();
+        for(int i = 0; i < length; i++) {
+            char c = mScratch.charAt(i);
+            if(c == '.') {
+                wholeDigits = leadingZeros + mDigitCount;
+            } else if(c == 'E') {
+                boolean negative = mScratch.charAt(i + 1) == '-';
+                for(int j = negative ? i + 2 : i + 1; j < length; j++) {
+                    exponent = exponent * 10 + (mScratch.charAt(j) - '0');
+                }
+                if(negative) exponent = -exponent;
+                break;
+            } else if(c == '0' && mDigitCount == 0) {
+                leadingZeros++;
+            } else {
+                mDigits[mDigitCount++] = c;
+            }
+        }
+        if(wholeDigits == -1) {
+            wholeDigits = leadingZeros + mDigitCount;
+        }
+
+        // Trailing zeros don't affect rounding
+        while(mDigitCount > 1 && mDigits[mDigitCount - 1] == '0') {
+            mDigitCount--;
+        }
+        mExponent = wholeDigits - leadingZeros + exponent;
+    }
+
+    /**
+     * Copies the digits of the value into mDigits and mExponent
+     * */
+    private void load(BigDecimal value) {
+        mNegative = value.signum() < 0;
+        mNaN = false;
+        mInfinite = false;
+        mDigitCount = 0;
+        mExponent = 0;
+        if(value.signum() == 0) {
+            return;
+        }
+
+        mScratch.setLength(0);
+        mScratch.append(value.unscaledValue().abs());
+        int length = mScratch.length();
+        if(mDigits.length < length) {
+            mDigits = new char[length];
+            mRounded = new char[length];
+        }
+        mScratch.getChars(0, length, mDigits, 0);
+        mDigitCount = length;
+        while(mDigitCount > 1 && mDigits[mDigitCount - 1] == '0') {
+            mDigitCount--;
+        }
+        mExponent = length - value.scale();
+    }
+
+    private void formatWithPrecision(int width, int precision) throws SyntaxException {
+        if(mNaN) {
+            throw new SyntaxException();
+        }
+
+        mOutputLength = 0;
+        if(mInfinite) {
+            int length = INFINITY.length + (mNegative ? 1 : 0);
+            ensureOutputCapacity(Math.max(width, length));
+            pad(width - length);
+            if(mNegative) mOutput[mOutputLength++] = '-';
+            for(char c : INFINITY) {
+                mOutput[mOutputLength++] = c;
+            }
+            return;
+        }
+
+        boolean scientific = false;
+        int exponent = 0;
+        int fractionDigits;
+        mMantissaLength = 0;
+        ensureMantissaCapacity(precision + 4);
+        if(mDigitCount == 0) {
+            mMantissa[mMantissaLength++] = '0';
+            fractionDigits = precision - 1;
+        } else {
+            System.arraycopy(mDigits, 0, mRounded, 0, mDigitCount);
+            int exp = round(mRounded, mDigitCount, mExponent, precision);
+            if(exp - 1 < -4 || exp - 1 >= precision) {
+                scientific = true;
+                exponent = exp - 1;
+                fillScientific(precision - 1);
+                fractionDigits = precision - 1;
+            } else {
+                ensureMantissaCapacity(Math.abs(exp) + precision + 4);
+                fillDecimal(precision - exp, exp);
+                fractionDigits = precision - exp;
+            }
+        }
+        addZeros(fractionDigits);
+
+        // The formatter pads to the width before we strip anything, so calculate its length
+        int exponentLength = 0;
+        if(scientific) {
+            int magnitude = Math.abs(exponent);
+            exponentLength = 2 + Math.max(2, digitCount(magnitude));
+        }
+        int length = (mNegative ? 1 : 0) + mMantissaLength + exponentLength;
+        ensureOutputCapacity(Math.max(width, length));
+        pad(width - length);
+
+        if(mNegative) mOutput[mOutputLength++] = '-';
+
+        // Strip trailing 0's (and the decimal point, if that's all that's left)
+        int mantissaLength = mMantissaLength;
+        if(indexOf(mMantissa, mantissaLength, '.') != -1) {
+            while(mantissaLength > 0 && mMantissa[mantissaLength - 1] == '0') {
+                mantissaLength--;
+            }
+            if(mMantissa[mantissaLength - 1] == '.') {
+                mantissaLength--;
+            }
+        }
+        System.arraycopy(mMantissa, 0, mOutput, mOutputLength, mantissaLength);
+        mOutputLength += mantissaLength;
+
+        // Strip "+" and unnecessary 0's from the exponent
+        if(scientific) {
+            mOutput[mOutputLength++] = 'e';
+            if(exponent < 0) {
+                mOutput[mOutputLength++] = '-';
+                exponent = -exponent;
+            }
+            int digits = digitCount(exponent);
+            for(int i = mOutputLength + digits - 1; i >= mOutputLength; i--) {
+                mOutput[i] = (char) ('0' + exponent % 10);
+                exponent /= 10;
+            }
+            mOutputLength += digits;
+        }
+    }
+
+    private static int digitCount(int value) {
+        int count = 1;
+        while(value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Rounds (half up) the digits to the precision. Returns the new exponent, in case of carry out.
+     * */
+    private static int round(char[] digits, int count, int exponent, int precision) {
+        if(precision >= count || precision < 0) {
+            return exponent;
+        }
+        if(precision == 0) {
+            if(digits[0] >= '5') {
+                digits[0] = '1';
+                fill(digits, 1, count, '0');
+                return exponent + 1;
+            } else {
+                fill(digits, 0, count, '0');
+                return exponent;
+            }
+        }
+        if(digits[precision] >= '5') {
+            int i = precision - 1;
+            while(i >= 0 && digits[i] == '9') {
+                i--;
+            }
+            if(i < 0) {
+                // 9.99 became 10.0
+                digits[0] = '1';
+                fill(digits, 1, count, '0');
+                return exponent + 1;
+            }
+            digits[i]++;
+            fill(digits, i + 1, count, '0');
+        } else {
+            fill(digits, precision, count, '0');
+        }
+        return exponent;
+    }
+
+    /**
+     * Writes d.ddd, with up to precision digits after the decimal point
+     * */
+    private void fillScientific(int precision) {
+        int t = Math.max(0, Math.min(mDigitCount - 1, precision));
+        mMantissa[mMantissaLength++] = mRounded[0];
+        if(t > 0) {
+            mMantissa[mMantissaLength++] = '.';
+            System.arraycopy(mRounded, 1, mMantissa, mMantissaLength, t);
+            mMantissaLength += t;
+        }
+    }
+
+    /**
+     * Writes ddd.ddd, with up to precision digits after the decimal point
+     * */
+    private void fillDecimal(int precision, int exp) {
+        if(exp > 0) {
+            if(mDigitCount < exp) {
+                System.arraycopy(mRounded, 0, mMantissa, 0, mDigitCount);
+                fill(mMantissa, mDigitCount, exp, '0');
+                mMantissaLength = exp;
+            } else {
+                int t = Math.min(mDigitCount - exp, precision);
+                System.arraycopy(mRounded, 0, mMantissa, 0, exp);
+                mMantissaLength = exp;
+                if(t > 0) {
+                    mMantissa[mMantissaLength++] = '.';
+                    System.arraycopy(mRounded, exp, mMantissa, mMantissaLength, t);
+                    mMantissaLength += t;
+                }
+            }
+        } else {
+            int zeros = Math.max(0, Math.min(-exp, precision));
+            int t = Math.max(0, Math.min(mDigitCount, precision + exp));
+            mMantissa[mMantissaLength++] = '0';
+            if(zeros > 0 || t > 0) {
+                mMantissa[mMantissaLength++] = '.';
+                fill(mMantissa, mMantissaLength, mMantissaLength + zeros, '0');
+                mMantissaLength += zeros;
+                System.arraycopy(mRounded, 0, mMantissa, mMantissaLength, t);
+                mMantissaLength += t;
+            }
+        }
+    }
+
+    /**
+     * Pads the mantissa with 0's until it has the given number of digits after the decimal point
+     * */
+    private void addZeros(int precision) {
+        int dot = indexOf(mMantissa, mMantissaLength, '.');
+        int existing = dot == -1 ? 0 : mMantissaLength - dot - 1;
+        if(existing >= precision) {
+            return;
+        }
+        ensureMantissaCapacity(mMantissaLength + precision - existing + 1);
+        if(dot == -1) {
+            mMantissa[mMantissaLength++] = '.';
+        }
+        fill(mMantissa, mMantissaLength, mMantissaLength + precision - existing, '0');
+        mMantissaLength += precision - existing;
+    }
+
+    private void pad(int spaces) {
+        for(int i = 0; i < spaces; i++) {
+            mOutput[mOutputLength++] = ' ';
+        }
+    }
+
+    private void ensureMantissaCapacity(int capacity) {
+        if(mMantissa.length < capacity) {
+            char[] mantissa = new char[capacity];
+            System.arraycopy(mMantissa, 0, mantissa, 0, mMantissaLength);
+            mMantissa = mantissa;
+        }
+    }
+
+    private void ensureOutputCapacity(int capacity) {
+        if(mOutput.length < capacity) {
+            mOutput = new char[capacity];
+        }
+    }
+
+    private static int indexOf(char[] array, int length, char c) {
+        for(int i = 0; i < length; i++) {
+            if(array[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private static void fill(char[] array, int from, int to, char c) {
+        for(int i = from; i < to; i++) {
+            array[i] = c;
+        }
+    }
+}
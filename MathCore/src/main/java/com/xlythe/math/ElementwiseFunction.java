@@ -0,0 +1,141 @@
+package com.xlythe.math;
+
+import org.ejml.data.DenseMatrix64F;
+
+/**
+ * Functions that apply to a matrix one cell at a time. The function is looked up once per
+ * matrix, then run as a tight loop over the matrix's backing array.
+ */
+enum ElementwiseFunction {
+    SIN("sin") {
+        @Override
+        double apply(double x) {
+            return Math.sin(x);
+        }
+    },
+    COS("cos") {
+        @Override
+        double apply(double x) {
+            return Math.cos(x);
+        }
+    },
+    TAN("tan") {
+        @Override
+        double apply(double x) {
+            return Math.tan(x);
+        }
+    },
+    SIN_DEGREES("sind") {
+        @Override
+        double apply(double x) {
+            return Math.sin(x * DEG);
+        }
+    },
+    COS_DEGREES("cosd") {
+        @Override
+        double apply(double x) {
+            return Math.cos(x * DEG);
+        }
+    },
+    TAN_DEGREES("tand") {
+        @Override
+        double apply(double x) {
+            return Math.tan(x * DEG);
+        }
+    },
+    ARCSIN("asin") {
+        @Override
+        double apply(double x) {
+            return Math.asin(x);
+        }
+    },
+    ARCCOS("acos") {
+        @Override
+        double apply(double x) {
+            return Math.acos(x);
+        }
+    },
+    ARCTAN("atan") {
+        @Override
+        double apply(double x) {
+            return Math.atan(x);
+        }
+    },
+    ARCSIN_DEGREES("asind") {
+        @Override
+        double apply(double x) {
+            return Math.asin(x) / DEG;
+        }
+    },
+    ARCCOS_DEGREES("acosd") {
+        @Override
+        double apply(double x) {
+            return Math.acos(x) / DEG;
+        }
+    },
+    ARCTAN_DEGREES("atand") {
+        @Override
+        double apply(double x) {
+            return Math.atan(x) / DEG;
+        }
+    },
+    LOG("log") {
+        @Override
+        double apply(double x) {
+            return Math.log10(x);
+        }
+    },
+    LN("ln") {
+        @Override
+        double apply(double x) {
+            return Math.log(x);
+        }
+    };
+
+    private static final double DEG = Math.PI / 180.0;
+
+    // Below this many cells, handing the work to other threads costs more than it saves
+    private static final int PARALLEL_THRESHOLD = 16 * 1024;
+
+    private final String mName;
+
+    ElementwiseFunction(String name) {
+        mName = name;
+    }
+
+    abstract double apply(double x);
+
+    /**
+     * Applies the function to every cell in [start, end), in place
+     * */
+    void apply(double[] data, int start, int end) {
+        for(int i = start; i < end; i++) {
+            data[i] = apply(data[i]);
+        }
+    }
+
+    /**
+     * Returns a copy of the matrix with the function applied to every cell.
+     * Large matrices are split across cores.
+     * */
+    DenseMatrix64F apply(DenseMatrix64F matrix) {
+        final DenseMatrix64F result = matrix.copy();
+        Parallel.forRange(result.getNumElements(), PARALLEL_THRESHOLD, new Parallel.Range() {
+            @Override
+            public void run(int start, int end) {
+                apply(result.data, start, end);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the function with the given name (eg. sind), or null if there isn't one
+     * */
+    static ElementwiseFunction forName(String name) {
+        for(ElementwiseFunction function : values()) {
+            if(function.mName.equals(name)) return function;
+        }
+        return null;
+    }
+}
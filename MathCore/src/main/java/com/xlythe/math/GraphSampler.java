@@ -0,0 +1,331 @@
+package com.xlythe.math;
+
+import org.javia.arity.ContextFunction;
+import org.javia.arity.EvalContext;
+import org.javia.arity.Function;
+import org.javia.arity.SyntaxException;
+
+/**
+ * Samples an equation across a window, producing the points to draw as a PointSeries.
+ *
+ * Supports Y=f(X), X=f(Y), and implicit equations in X and Y (eg. X^2+Y^2=16).
+ * Used by GraphModule on Android, but has no ties to it.
+ */
+public class GraphSampler {
+    private static final String X = "X";
+    private static final String Y = "Y";
+
+    // Explicit graphs start with samples this many pixels apart, and are subdivided where needed
+    private static final float INITIAL_SPACING = 16;
+
+    // How far (in pixels) a straight line between two samples may stray from the curve
+    private static final float TOLERANCE = 1f;
+
+    // Intervals are halved at most this many times (down to a quarter of a pixel)
+    private static final int MAX_DEPTH = 6;
+
+    // Intervals per chunk, when an explicit graph is split across cores
+    private static final int MIN_CHUNK = 16;
+
+    // A jump (in pixels) across the smallest interval that's treated as a discontinuity, not a steep line
+    private static final float MAX_JUMP = 16;
+
+    private final Solver mSolver;
+    private final float mMinY;
+    private final float mMaxY;
+    private final float mMinX;
+    private final float mMaxX;
+    private final Cancellable mCancellable;
+
+    // The size of a pixel, in graph units
+    private float mPixelWidth;
+    private float mPixelHeight;
+
+    public GraphSampler(Solver solver, float minY, float maxY, float minX, float maxX,
+                        float zoomLevel, Cancellable cancellable) {
+        mSolver = solver;
+        mMinY = minY;
+        mMaxY = maxY;
+        mMinX = minX;
+        mMaxX = maxX;
+        mCancellable = cancellable;
+
+        // Until told otherwise, assume the old fixed step was about 4 pixels wide
+        mPixelWidth = mPixelHeight = 0.1f * zoomLevel / 4;
+    }
+
+    /**
+     * Sets the size of the view, in pixels, so curves are sampled just finely enough to look smooth
+     * */
+    public void setResolution(int width, int height) {
+        if(width > 0 && height > 0) {
+            mPixelWidth = (mMaxX - mMinX) / width;
+            mPixelHeight = (mMaxY - mMinY) / height;
+        }
+    }
+
+    /**
+     * Samples an equation typed in the current base (eg. Y=X^2, or just X^2).
+     * Returns null if sampling was cancelled.
+     * */
+    public PointSeries sample(String text) throws SyntaxException {
+        String[] equations = text.split("=");
+        if (equations.length >= 2) {
+            String leftEquation = mSolver.getBaseModule().changeBase(equations[0],
+                    mSolver.getBaseModule().getBase(), Base.DECIMAL);
+            String rightEquation = mSolver.getBaseModule().changeBase(equations[1],
+                    mSolver.getBaseModule().getBase(), Base.DECIMAL);
+            return graph(leftEquation, rightEquation);
+        } else {
+            String equation = mSolver.getBaseModule().changeBase(text,
+                    mSolver.getBaseModule().getBase(), Base.DECIMAL);
+            return graph(equation);
+        }
+    }
+
+    public PointSeries graph(String equation) {
+        Function function;
+        try {
+            function = mSolver.compile(equation, X);
+        } catch(SyntaxException e) {
+            return new PointSeries(0);
+        }
+        return graph(function, false);
+    }
+
+    public PointSeries graph(String leftEquation, String rightEquation) {
+        try {
+            if(leftEquation.equals(Y) && !rightEquation.contains(Y)) {
+                return graph(mSolver.compile(rightEquation, X), false);
+            } else if(leftEquation.equals(X) && !rightEquation.contains(X)) {
+                return graph(mSolver.compile(rightEquation, Y), true);
+            } else if(rightEquation.equals(Y) && !leftEquation.contains(Y)) {
+                return graph(mSolver.compile(leftEquation, X), false);
+            } else if(rightEquation.equals(X) && !leftEquation.contains(X)) {
+                return graph(mSolver.compile(leftEquation, Y), true);
+            } else {
+                return graphImplicit(mSolver.compile(leftEquation, X, Y), mSolver.compile(rightEquation, X, Y));
+            }
+        } catch(SyntaxException e) {
+            return new PointSeries(0);
+        }
+    }
+
+    /**
+     * Samples the function across the window. If swapAxes is set, the function takes Y and returns X.
+     *
+     * Starts from a coarse, evenly spaced grid and subdivides wherever a straight line between
+     * neighbouring samples would be visibly off the curve. Flat stretches cost one sample every few
+     * pixels, while steep or tightly curved ones (eg. tan(X) near its asymptotes) are filled in.
+     * Discontinuities become breaks, so they aren't drawn as near vertical lines.
+     * */
+    private PointSeries graph(Function function, boolean swapAxes) {
+        final Curve curve = swapAxes
+                ? new Curve(function, mMinY, mMaxY, mPixelHeight, mMinX, mMaxX, mPixelWidth, true)
+                : new Curve(function, mMinX, mMaxX, mPixelWidth, mMinY, mMaxY, mPixelHeight, false);
+        if(!(curve.mMax > curve.mMin) || !(curve.mStep > 0)) return new PointSeries(0);
+
+        final int intervals = (int) Math.min(Math.ceil((curve.mMax - curve.mMin) / (INITIAL_SPACING * curve.mStep)), 1 << 16);
+        final double[] inputs = new double[intervals + 1];
+        final double[] outputs = new double[intervals + 1];
+        Parallel.forRange(intervals + 1, MIN_CHUNK, new Parallel.Range() {
+            @Override
+            public void run(int start, int end) {
+                EvalContext context = new EvalContext();
+                for(int i = start; i < end && !isCancelled(); i++) {
+                    inputs[i] = curve.mMin + (curve.mMax - curve.mMin) * i / intervals;
+                    outputs[i] = eval(curve.mFunction, inputs[i], context);
+                }
+            }
+        });
+        if(isCancelled()) return null;
+
+        // Each chunk of intervals is filled in on its own, from its first point up to (and including)
+        // its last. They're stitched back together in order afterwards.
+        final PointSeries[] chunks = new PointSeries[intervals];
+        Parallel.forRange(intervals, MIN_CHUNK, new Parallel.Range() {
+            @Override
+            public void run(int start, int end) {
+                EvalContext context = new EvalContext();
+                PointSeries chunk = new PointSeries((end - start) * 2);
+                curve.add(chunk, inputs[start], outputs[start]);
+                for(int i = start; i < end && !isCancelled(); i++) {
+                    // For a smooth curve, a line across one interval misses the middle by about an eighth of the
+                    // second difference there. If that's within the tolerance, there's nothing more to sample.
+                    // Stretches well off the edge of the window, or undefined, are left coarse too.
+                    double error = Math.max(secondDifference(outputs, i), secondDifference(outputs, i + 1)) / 8;
+                    boolean hidden = curve.isHidden(outputs[Math.max(i - 1, 0)], outputs[i], outputs[i + 1])
+                            && curve.isHidden(outputs[i], outputs[i + 1], outputs[Math.min(i + 2, intervals)]);
+                    if(!(error / curve.mPixel <= TOLERANCE) && !hidden) {
+                        subdivide(curve, chunk, inputs[i], outputs[i], inputs[i + 1], outputs[i + 1], 0, context);
+                    }
+                    curve.add(chunk, inputs[i + 1], outputs[i + 1]);
+                }
+                chunks[start] = chunk;
+            }
+        });
+        if(isCancelled()) return null;
+
+        PointSeries series = new PointSeries(intervals * 2);
+        for(int start = 0; start < intervals; start++) {
+            PointSeries chunk = chunks[start];
+            if(chunk == null) continue;
+
+            // A chunk starts on the point the one before it ended on (unless that was undefined, and left out)
+            int first = start > 0 && !Curve.isUndefined(outputs[start]) ? 1 : 0;
+            for(int p = first; p < chunk.size(); p++) {
+                if(chunk.isBreak(p)) series.addBreak();
+                else series.add(chunk.getX(p), chunk.getY(p));
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Returns |f(i-1) - 2f(i) + f(i+1)|, using whichever neighbours exist. NaN if any are undefined.
+     * */
+    private static double secondDifference(double[] outputs, int i) {
+        if(outputs.length < 3) return Double.NaN;
+        i = Math.max(1, Math.min(i, outputs.length - 2));
+        return Math.abs(outputs[i - 1] - 2 * outputs[i] + outputs[i + 1]);
+    }
+
+    /**
+     * Adds the points strictly between start and end, halving the interval until a line is close
+     * enough to the curve
+     * */
+    private void subdivide(Curve curve, PointSeries series,
+                           double start, double startOutput, double end, double endOutput, int depth,
+                           EvalContext context) {
+        double middle = (start + end) / 2;
+        double middleOutput = eval(curve.mFunction, middle, context);
+
+        // Intervals only get here if their neighbours say they're curved, so the first split is always
+        // followed through. A middle that happens to land on the line (eg. sin(X) centered on 0) can't end it.
+        if(depth > 0 && curve.isStraight(startOutput, middleOutput, endOutput)) {
+            curve.add(series, middle, middleOutput);
+        } else if(depth == MAX_DEPTH) {
+            // Still not a line this close in. If the jump across the interval is small, or shrinks
+            // when it's halved, it's just a very steep curve (eg. ln(X) near 0). Otherwise (eg. tan(X)
+            // at pi/2, or floor(X)) the curve isn't connected here. The middle goes on whichever side
+            // of the break it's closest to.
+            double jump = Math.abs(endOutput - startOutput);
+            double left = Math.abs(middleOutput - startOutput);
+            double right = Math.abs(endOutput - middleOutput);
+            if(jump / curve.mPixel <= MAX_JUMP || Math.max(left, right) < 0.9 * jump) {
+                curve.add(series, middle, middleOutput);
+            } else if(left < right) {
+                curve.add(series, middle, middleOutput);
+                series.addBreak();
+            } else {
+                series.addBreak();
+                curve.add(series, middle, middleOutput);
+            }
+        } else {
+            subdivide(curve, series, start, startOutput, middle, middleOutput, depth + 1, context);
+            curve.add(series, middle, middleOutput);
+            subdivide(curve, series, middle, middleOutput, end, endOutput, depth + 1, context);
+        }
+    }
+
+    /**
+     * Traces the curve where both sides are equal, with marching squares
+     * */
+    private PointSeries graphImplicit(Function left, Function right) {
+        return new MarchingSquares(left, right, mMinX, mMaxX, mMinY, mMaxY,
+                mPixelWidth, mPixelHeight, mCancellable).trace();
+    }
+
+    /**
+     * Evaluates the function with its own context. Compiled functions otherwise share a single
+     * context behind a lock, which would keep threads sampling the same graph from running at once.
+     * */
+    static double eval(Function function, double x, EvalContext context) {
+        if(function instanceof ContextFunction) {
+            return ((ContextFunction) function).eval(x, context);
+        }
+        return function.eval(x);
+    }
+
+    static double eval(Function function, double x, double y, EvalContext context) {
+        if(function instanceof ContextFunction) {
+            return ((ContextFunction) function).eval(x, y, context);
+        }
+        return function.eval(x, y);
+    }
+
+    private boolean isCancelled() {
+        return mCancellable != null && mCancellable.isCancelled();
+    }
+
+    /**
+     * An explicit function and the window it's drawn in, with inputs along one axis and outputs
+     * along the other
+     * */
+    private static final class Curve {
+        final Function mFunction;
+        final float mMin;
+        final float mMax;
+        // The size of a pixel along the input axis
+        final float mStep;
+        final float mMinOutput;
+        final float mMaxOutput;
+        // The size of a pixel along the output axis
+        final float mPixel;
+        final boolean mSwapAxes;
+
+        Curve(Function function, float min, float max, float step,
+              float minOutput, float maxOutput, float pixel, boolean swapAxes) {
+            mFunction = function;
+            mMin = min;
+            mMax = max;
+            mStep = step;
+            mMinOutput = minOutput;
+            mMaxOutput = maxOutput;
+            mPixel = pixel;
+            mSwapAxes = swapAxes;
+        }
+
+        /**
+         * Returns true if a line from start to end passes close enough to the middle. Stretches that
+         * can't be seen don't need any more detail.
+         * */
+        boolean isStraight(double start, double middle, double end) {
+            if(isHidden(start, middle, end)) return true;
+            return Math.abs(middle - (start + end) / 2) / mPixel <= TOLERANCE;
+        }
+
+        /**
+         * Returns true if all three outputs are past the same edge of the window, or all undefined
+         * */
+        boolean isHidden(double a, double b, double c) {
+            return (a > mMaxOutput && b > mMaxOutput && c > mMaxOutput)
+                    || (a < mMinOutput && b < mMinOutput && c < mMinOutput)
+                    || (Double.isNaN(a) && Double.isNaN(b) && Double.isNaN(c));
+        }
+
+        /**
+         * Adds the point, or a break if the function is undefined (or infinite) there
+         * */
+        void add(PointSeries series, double input, double output) {
+            if(isUndefined(output)) {
+                series.addBreak();
+            } else if(mSwapAxes) {
+                series.add((float) output, (float) input);
+            } else {
+                series.add((float) input, (float) output);
+            }
+        }
+
+        static boolean isUndefined(double output) {
+            return Double.isNaN(output) || Double.isInfinite(output);
+        }
+    }
+
+    /**
+     * Lets long running samples be abandoned part way through
+     * */
+    public interface Cancellable {
+        boolean isCancelled();
+    }
+}
@@ -0,0 +1,217 @@
+package com.xlythe.math;
+
+import org.javia.arity.Complex;
+import org.javia.arity.SyntaxException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Solves an equation that's being typed, one keystroke at a time.
+ *
+ * The equation is split into its top level terms (eg. 1+2*3-4 is 1, +2*3 and -4).
+ * We remember every term's normalized text and the running total at the end of it, so
+ * when the user types another digit or operator only the terms after the unchanged
+ * prefix are normalized and evaluated.
+ *
+ * Whole equations still go through the Solver's cache, so repeating one is a lookup.
+ * The terms don't; they'd only push whole equations out of it.
+ *
+ * Returns the same results as Solver.solve(). Not thread safe; use one per text field.
+ */
+public class IncrementalSolver {
+    private final Solver mSolver;
+
+    // The equation (as typed, minus any trailing operators) we last evaluated
+    private String mPrevious = "";
+
+    // The base mPrevious was typed in. Changing it changes what every term means.
+    private Base mBase;
+
+    // The index of every top level + or - in mPrevious, the normalized term (sign included)
+    // that ends there, and the total of all the terms up to it (null until it's needed)
+    private final List<Integer> mBoundaries = new ArrayList<Integer>();
+    private final List<String> mTerms = new ArrayList<String>();
+    private final List<Complex> mTotals = new ArrayList<Complex>();
+
+    public IncrementalSolver(Solver solver) {
+        mSolver = solver;
+    }
+
+    /**
+     * Input an equation as a string
+     * ex: sin(150)
+     * and get the result returned.
+     * */
+    public String solve(String input) throws SyntaxException {
+        // Running totals are kept as doubles, so precise answers come from the Solver directly
+        if(mSolver.displayContainsMatrices(input) || mSolver.getMathContext() != null) {
+            return mSolver.solve(input);
+        }
+
+        if(input.trim().isEmpty()) {
+            return "";
+        }
+
+        // Drop final operators (they can only result in error)
+        int size = input.length();
+        while(size > 0 && Solver.isOperator(input.charAt(size - 1))) {
+            size--;
+        }
+        input = input.substring(0, size);
+
+        if(mSolver.getBase() != mBase) {
+            reset();
+            mBase = mSolver.getBase();
+        }
+
+        Complex value;
+        try {
+            value = evaluate(input);
+        } catch(SyntaxException e) {
+            // Splitting into terms isn't always valid (eg. functions written without
+            // parenthesis). Let the Solver have a go at the whole thing.
+            reset();
+            value = mSolver.evaluate(mSolver.normalize(input));
+        }
+        return mSolver.format(value);
+    }
+
+    /**
+     * Forget the previous equation
+     * */
+    public void reset() {
+        mPrevious = "";
+        mBoundaries.clear();
+        mTerms.clear();
+        mTotals.clear();
+    }
+
+    private Complex evaluate(String input) throws SyntaxException {
+        // Percentages refer to the term before them (50+10% is 55), so they can't be split up
+        if(input.indexOf('%') != -1) {
+            reset();
+            return mSolver.evaluate(mSolver.normalize(input));
+        }
+
+        // Throw away any terms that were edited
+        int common = commonPrefixLength(input, mPrevious);
+        int reuse = 0;
+        while(reuse < mBoundaries.size() && mBoundaries.get(reuse) < common) {
+            reuse++;
+        }
+        while(mBoundaries.size() > reuse) {
+            mBoundaries.remove(mBoundaries.size() - 1);
+            mTerms.remove(mTerms.size() - 1);
+            mTotals.remove(mTotals.size() - 1);
+        }
+        mPrevious = input;
+
+        int start = reuse == 0 ? 0 : mBoundaries.get(reuse - 1);
+
+        // Normalize any new terms
+        int depth = 0;
+        for(int i = start + 1; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if(c == Constants.LEFT_PAREN) {
+                depth++;
+            } else if(c == Constants.RIGHT_PAREN) {
+                depth--;
+
+                // An unmatched parenthesis wraps everything before it (eg. 6+2)*3 is (6+2)*3)
+                if(depth < 0) {
+                    reset();
+                    return mSolver.evaluate(mSolver.normalize(input));
+                }
+            } else if(depth == 0 && isBoundary(input, i)) {
+                mBoundaries.add(i);
+                mTerms.add(mSolver.normalize(input.substring(start, i)));
+                mTotals.add(null);
+                start = i;
+            }
+        }
+
+        // And the one that's still being typed
+        String last = mSolver.normalize(input.substring(start));
+
+        // The normalized terms add up to the normalized equation, which may already be cached
+        StringBuilder decimalInput = new StringBuilder(input.length() + 16);
+        for(String term : mTerms) {
+            decimalInput.append(term);
+        }
+        decimalInput.append(last);
+        String key = decimalInput.toString();
+        Complex value = mSolver.getCachedResult(key);
+        if(value != null) {
+            return value;
+        }
+
+        // Bring the running totals up to date
+        Complex total = null;
+        for(int i = 0; i < mTerms.size(); i++) {
+            if(mTotals.get(i) == null) {
+                mTotals.set(i, add(total, mTerms.get(i)));
+            }
+            total = mTotals.get(i);
+        }
+
+        value = add(total, last);
+        mSolver.cacheResult(key, value);
+        return value;
+    }
+
+    /**
+     * Adds (or subtracts, depending on its sign) the normalized term to the total
+     * */
+    private Complex add(Complex total, String term) throws SyntaxException {
+        if(total == null) {
+            return mSolver.evaluateUncached(term);
+        }
+
+        Complex value = mSolver.evaluateUncached(term.substring(1));
+        if(term.charAt(0) == Constants.PLUS) {
+            return new Complex(total).add(value);
+        } else {
+            return new Complex(total).sub(value);
+        }
+    }
+
+    /**
+     * Returns true if the character at the index is a binary + or -, as opposed to a sign.
+     * */
+    private static boolean isBoundary(String input, int index) {
+        char c = input.charAt(index);
+        if(c != Constants.PLUS && c != Constants.MINUS && c != '-') {
+            return false;
+        }
+
+        // Only a binary operator if there's an operand before it (spaces don't count)
+        int p = index - 1;
+        while(p > 0 && Character.isWhitespace(input.charAt(p))) {
+            p--;
+        }
+        char previous = input.charAt(p);
+        if(!Character.isLetterOrDigit(previous)
+                && previous != Constants.RIGHT_PAREN
+                && previous != '!'
+                && previous != '.') {
+            return false;
+        }
+
+        // 1e-5 is a single number
+        if((previous == 'e' || previous == 'E') && p > 0 && Character.isDigit(input.charAt(p - 1))) {
+            return false;
+        }
+        return true;
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for(int i = 0; i < length; i++) {
+            if(a.charAt(i) != b.charAt(i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+}
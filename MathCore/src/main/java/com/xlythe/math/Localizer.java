@@ -1,67 +1,32 @@
 package com.xlythe.math;
 
-import android.content.Context;
-import android.util.Log;
-import android.util.SparseArray;
-
-import java.lang.reflect.Field;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 
 /**
  * Translates an equation typed in the default locale back into English
  *
- * This assumes the app has English translations
+ * This assumes the app has English translations. See AndroidLocalizer for
+ * building the translations out of an app's string resources.
  */
 public class Localizer {
-    private static final String TAG = Localizer.class.getSimpleName();
     private final Map<String, String> mMap = new HashMap<String, String>();
     private boolean mUseDegrees = false;
 
-    public Localizer(Context context, Class r) {
-        buildResourceMap(context, r);
-    }
+    public Localizer() {}
 
-    @SuppressWarnings("rawtypes")
-    public void buildResourceMap(Context context, Class r) {
-        try {
-            Log.d("Localizer", "Building resource map");
-            Class color = Class.forName(r.getName() + "$string");
-            for (Field f : color.getFields()) {
-                if(detect(context, f, "asin"));
-                else if(detect(context, f, "acos"));
-                else if(detect(context, f, "atan"));
-                else if(detect(context, f, "sin"));
-                else if(detect(context, f, "cos"));
-                else if(detect(context, f, "tan"));
-                else if(detect(context, f, "log"));
-                else if(detect(context, f, "ln"));
-                else if(detect(context, f, "det"));
-                else if(detect(context, f, "cbrt"));
-                else if(f.getName().toLowerCase().contains("dot") || f.getName().toLowerCase().contains("decimal")) {
-                    mMap.put(".", context.getString(f.getInt(null)));
-                }
-                else if(f.getName().toLowerCase().contains("matrix") && f.getName().toLowerCase().contains("separator")) {
-                    mMap.put(",", context.getString(f.getInt(null)));
-                }
-            }
-        } catch (IllegalArgumentException e) {
-            Log.e(TAG, "Should never happen", e);
-        } catch (IllegalAccessException e) {
-            Log.e(TAG, "Should never happen", e);
-        } catch (ClassNotFoundException e) {
-            // Do nothing. Happens if no Strings are found.
-        }
+    /**
+     * Translations from the English word (eg. "sin", or "." for the decimal point) to the localized one
+     * */
+    public Localizer(Map<String, String> translations) {
+        mMap.putAll(translations);
     }
 
-    private boolean detect(Context context, Field f, String phrase) throws IllegalAccessException {
-        if(f.getName().toLowerCase().contains(phrase)) {
-            mMap.put(phrase, context.getString(f.getInt(null)));
-            return true;
-        }
-        return false;
+    /**
+     * Registers the localized form of an English word
+     * */
+    public void put(String word, String translation) {
+        mMap.put(word, translation);
     }
 
     /**
@@ -0,0 +1,339 @@
+package com.xlythe.math;
+
+import org.javia.arity.EvalContext;
+import org.javia.arity.Function;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Traces the curve where two functions of X and Y are equal (eg. X^2+Y^2=16) with marching squares.
+ *
+ * f = left - right is sampled on a coarse grid first. Only the cells where f changes sign are
+ * sampled again on a finer grid, and each fine cell the curve passes through gives a line segment.
+ * The segments are then joined up, so the result is a handful of connected lines instead of a
+ * cloud of points. Rows of cells are split across cores.
+ */
+final class MarchingSquares {
+    // The size of a coarse cell, in pixels
+    private static final int CELL = 8;
+
+    // Coarse cells with the curve in them are split into this many fine cells a side (2 pixels each)
+    private static final int REFINE = 4;
+
+    // Caps the coarse grid on very large views
+    private static final int MAX_CELLS = 512;
+
+    private final Function mLeft;
+    private final Function mRight;
+    private final double mMinX;
+    private final double mMinY;
+    private final double mFineWidth;
+    private final double mFineHeight;
+
+    // The number of coarse cells across and down
+    private final int mColumns;
+    private final int mRows;
+
+    // The number of fine vertices across, for numbering the edges between them
+    private final long mStride;
+
+    private final GraphSampler.Cancellable mCancellable;
+    private volatile boolean mCancelled;
+
+    MarchingSquares(Function left, Function right, float minX, float maxX, float minY, float maxY,
+                    float pixelWidth, float pixelHeight, GraphSampler.Cancellable cancellable) {
+        mLeft = left;
+        mRight = right;
+        mMinX = minX;
+        mMinY = minY;
+        mColumns = cells(maxX - minX, pixelWidth);
+        mRows = cells(maxY - minY, pixelHeight);
+        mFineWidth = (double) (maxX - minX) / (mColumns * REFINE);
+        mFineHeight = (double) (maxY - minY) / (mRows * REFINE);
+        mStride = (long) mColumns * REFINE + 1;
+        mCancellable = cancellable;
+    }
+
+    private static int cells(float length, float pixel) {
+        if(!(length > 0) || !(pixel > 0)) return 0;
+        return (int) Math.max(1, Math.min(MAX_CELLS, Math.ceil(length / (CELL * pixel))));
+    }
+
+    /**
+     * Returns the curve as connected lines, separated by breaks. Returns null if cancelled.
+     * */
+    PointSeries trace() {
+        if(mColumns == 0 || mRows == 0) return new PointSeries(0);
+
+        // f at every coarse vertex, row by row from the bottom
+        final double[] coarse = new double[(mColumns + 1) * (mRows + 1)];
+        Parallel.forRange(mRows + 1, 8, new Parallel.Range() {
+            @Override
+            public void run(int start, int end) {
+                EvalContext context = new EvalContext();
+                for(int j = start; j < end && !isCancelled(); j++) {
+                    for(int i = 0; i <= mColumns; i++) {
+                        coarse[j * (mColumns + 1) + i] = eval(i * REFINE, j * REFINE, context);
+                    }
+                }
+            }
+        });
+        if(isCancelled()) return null;
+
+        // Each slice of rows collects its own segments, and they're combined in order afterwards
+        final Segments[] slices = new Segments[mRows];
+        Parallel.forRange(mRows, 4, new Parallel.Range() {
+            @Override
+            public void run(int start, int end) {
+                EvalContext context = new EvalContext();
+                Segments segments = new Segments();
+                double[] fine = new double[(REFINE + 1) * (REFINE + 1)];
+                for(int j = start; j < end && !isCancelled(); j++) {
+                    for(int i = 0; i < mColumns; i++) {
+                        if(hasSignChange(coarse, i, j)) {
+                            march(i, j, fine, segments, context);
+                        }
+                    }
+                }
+                slices[start] = segments;
+            }
+        });
+        if(isCancelled()) return null;
+
+        Segments segments = new Segments();
+        for(Segments slice : slices) {
+            if(slice != null) segments.addAll(slice);
+        }
+        return segments.join();
+    }
+
+    /**
+     * Returns true if the curve might pass through coarse cell (i, j)
+     * */
+    private boolean hasSignChange(double[] coarse, int i, int j) {
+        int row = j * (mColumns + 1) + i;
+        int above = row + mColumns + 1;
+        double a = coarse[row];
+        double b = coarse[row + 1];
+        double c = coarse[above];
+        double d = coarse[above + 1];
+
+        // NaN corners drop out of these comparisons
+        boolean negative = a < 0 || b < 0 || c < 0 || d < 0;
+        boolean positive = a >= 0 || b >= 0 || c >= 0 || d >= 0;
+
+        // Next to a pole, or the edge of the domain, the corners can't be trusted to show a crossing
+        boolean undefined = isUndefined(a) || isUndefined(b) || isUndefined(c) || isUndefined(d);
+        return (negative && positive) || (undefined && (negative || positive));
+    }
+
+    private static boolean isUndefined(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value);
+    }
+
+    /**
+     * Samples coarse cell (i, j) on the fine grid, and adds a segment for every fine cell the curve crosses
+     * */
+    private void march(int i, int j, double[] fine, Segments segments, EvalContext context) {
+        int x0 = i * REFINE;
+        int y0 = j * REFINE;
+        for(int b = 0; b <= REFINE; b++) {
+            for(int a = 0; a <= REFINE; a++) {
+                fine[b * (REFINE + 1) + a] = eval(x0 + a, y0 + b, context);
+            }
+        }
+
+        for(int b = 0; b < REFINE; b++) {
+            for(int a = 0; a < REFINE; a++) {
+                // Corners counter-clockwise from the bottom left
+                int index = b * (REFINE + 1) + a;
+                double v0 = fine[index];
+                double v1 = fine[index + 1];
+                double v2 = fine[index + REFINE + 2];
+                double v3 = fine[index + REFINE + 1];
+                // Skip cells touching undefined or infinite values
+                double sum = v0 + v1 + v2 + v3;
+                if(isUndefined(sum)) continue;
+
+                int x = x0 + a;
+                int y = y0 + b;
+                boolean n0 = v0 < 0;
+                boolean n1 = v1 < 0;
+                boolean n2 = v2 < 0;
+                boolean n3 = v3 < 0;
+                if(n0 == n1 && n1 == n2 && n2 == n3) continue;
+
+                if(n0 == n2 && n1 == n3) {
+                    // A saddle. The value in the middle decides which pair of opposite corners is cut off.
+                    boolean center = sum / 4 < 0;
+                    if(n0 != center) cutCorner(segments, x, y, 3, 0, v0, v1, v2, v3, context);
+                    if(n1 != center) cutCorner(segments, x, y, 0, 1, v0, v1, v2, v3, context);
+                    if(n2 != center) cutCorner(segments, x, y, 1, 2, v0, v1, v2, v3, context);
+                    if(n3 != center) cutCorner(segments, x, y, 2, 3, v0, v1, v2, v3, context);
+                } else {
+                    // Exactly two edges change sign
+                    int first = n0 != n1 ? 0 : n1 != n2 ? 1 : 2;
+                    int second = n0 != n3 ? 3 : n3 != n2 ? 2 : 1;
+                    cutCorner(segments, x, y, first, second, v0, v1, v2, v3, context);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the segment across fine cell (x, y) between two of its edges, numbered counter-clockwise
+     * from the bottom. Sign changes across a pole (eg. 1/X) aren't the curve, so they're skipped.
+     * */
+    private void cutCorner(Segments segments, int x, int y, int edgeA, int edgeB,
+                           double v0, double v1, double v2, double v3, EvalContext context) {
+        double ax = crossingX(x, edgeA, v0, v1, v2, v3);
+        double ay = crossingY(y, edgeA, v0, v1, v2, v3);
+        double bx = crossingX(x, edgeB, v0, v1, v2, v3);
+        double by = crossingY(y, edgeB, v0, v1, v2, v3);
+
+        // Near a real crossing, f is smaller between the edges than at the corners
+        double middle = eval((ax + bx) / 2, (ay + by) / 2, context);
+        double largest = Math.max(Math.max(Math.abs(v0), Math.abs(v1)), Math.max(Math.abs(v2), Math.abs(v3)));
+        if(!(Math.abs(middle) <= largest)) return;
+
+        segments.add(edgeKey(x, y, edgeA), toX(ax), toY(ay), edgeKey(x, y, edgeB), toX(bx), toY(by));
+    }
+
+    /**
+     * Where the curve crosses the edge, in fine grid units. Interpolated from the lower or left end,
+     * so both cells that share an edge agree on the point.
+     * */
+    private static double crossingX(int x, int edge, double v0, double v1, double v2, double v3) {
+        switch(edge) {
+            case 0: return x + v0 / (v0 - v1);
+            case 1: return x + 1;
+            case 2: return x + v3 / (v3 - v2);
+            default: return x;
+        }
+    }
+
+    private static double crossingY(int y, int edge, double v0, double v1, double v2, double v3) {
+        switch(edge) {
+            case 0: return y;
+            case 1: return y + v1 / (v1 - v2);
+            case 2: return y + 1;
+            default: return y + v0 / (v0 - v3);
+        }
+    }
+
+    /**
+     * Numbers every edge of the fine grid. Horizontal edges are even, vertical ones odd.
+     * */
+    private long edgeKey(int x, int y, int edge) {
+        switch(edge) {
+            case 0: return (y * mStride + x) * 2;
+            case 1: return (y * mStride + x + 1) * 2 + 1;
+            case 2: return ((y + 1) * mStride + x) * 2;
+            default: return (y * mStride + x) * 2 + 1;
+        }
+    }
+
+    private float toX(double x) {
+        return (float) (mMinX + x * mFineWidth);
+    }
+
+    private float toY(double y) {
+        return (float) (mMinY + y * mFineHeight);
+    }
+
+    private double eval(double x, double y, EvalContext context) {
+        return GraphSampler.eval(mLeft, mMinX + x * mFineWidth, mMinY + y * mFineHeight, context)
+                - GraphSampler.eval(mRight, mMinX + x * mFineWidth, mMinY + y * mFineHeight, context);
+    }
+
+    private boolean isCancelled() {
+        if(!mCancelled && mCancellable != null && mCancellable.isCancelled()) {
+            mCancelled = true;
+        }
+        return mCancelled;
+    }
+
+    /**
+     * Line segments, each with the fine grid edges its ends lie on
+     * */
+    private static final class Segments {
+        private long[] mKeys = new long[32];
+        private float[] mPoints = new float[64];
+        private int mSize;
+
+        void add(long keyA, float ax, float ay, long keyB, float bx, float by) {
+            if(mSize * 2 == mKeys.length) {
+                mKeys = Arrays.copyOf(mKeys, mKeys.length * 2);
+                mPoints = Arrays.copyOf(mPoints, mPoints.length * 2);
+            }
+            mKeys[mSize * 2] = keyA;
+            mKeys[mSize * 2 + 1] = keyB;
+            mPoints[mSize * 4] = ax;
+            mPoints[mSize * 4 + 1] = ay;
+            mPoints[mSize * 4 + 2] = bx;
+            mPoints[mSize * 4 + 3] = by;
+            mSize++;
+        }
+
+        void addAll(Segments other) {
+            for(int s = 0; s < other.mSize; s++) {
+                add(other.mKeys[s * 2], other.mPoints[s * 4], other.mPoints[s * 4 + 1],
+                        other.mKeys[s * 2 + 1], other.mPoints[s * 4 + 2], other.mPoints[s * 4 + 3]);
+            }
+        }
+
+        /**
+         * Chains segments that share an edge into lines. Ends are numbered segment * 2 + (0 or 1).
+         * */
+        PointSeries join() {
+            int ends = mSize * 2;
+            int[] partner = new int[ends];
+            Arrays.fill(partner, -1);
+            Map<Long, Integer> unmatched = new HashMap<>(ends);
+            for(int end = 0; end < ends; end++) {
+                Integer other = unmatched.remove(mKeys[end]);
+                if(other != null) {
+                    partner[end] = other;
+                    partner[other] = end;
+                } else {
+                    unmatched.put(mKeys[end], end);
+                }
+            }
+
+            PointSeries series = new PointSeries(mSize + 16);
+            PointSeries backwards = new PointSeries();
+            boolean[] used = new boolean[mSize];
+            for(int s = 0; s < mSize; s++) {
+                if(used[s]) continue;
+                used[s] = true;
+
+                // Walk back from the start, then lay those points down in reverse
+                backwards.clear();
+                int end = s * 2;
+                while(partner[end] != -1 && !used[partner[end] / 2]) {
+                    end = partner[end] ^ 1;
+                    used[end / 2] = true;
+                    backwards.add(mPoints[end * 2], mPoints[end * 2 + 1]);
+                }
+                for(int p = backwards.size() - 1; p >= 0; p--) {
+                    series.add(backwards.getX(p), backwards.getY(p));
+                }
+                series.add(mPoints[s * 4], mPoints[s * 4 + 1]);
+                series.add(mPoints[s * 4 + 2], mPoints[s * 4 + 3]);
+
+                // Then forwards from the end. A closed loop was already walked all the way round
+                // backwards, and ends where it started.
+                end = s * 2 + 1;
+                while(partner[end] != -1 && !used[partner[end] / 2]) {
+                    end = partner[end] ^ 1;
+                    used[end / 2] = true;
+                    series.add(mPoints[end * 2], mPoints[end * 2 + 1]);
+                }
+                series.addBreak();
+            }
+            return series;
+        }
+    }
+}
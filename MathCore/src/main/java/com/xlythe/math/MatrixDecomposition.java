@@ -0,0 +1,208 @@
+package com.xlythe.math;
+
+import org.ejml.UtilEjml;
+import org.ejml.data.Complex64F;
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.factory.DecompositionFactory;
+import org.ejml.factory.EigenDecomposition;
+import org.ejml.factory.LUDecomposition;
+import org.ejml.factory.SingularValueDecomposition;
+import org.ejml.ops.CommonOps;
+import org.javia.arity.SyntaxException;
+
+import java.util.Arrays;
+
+/**
+ * The LU, eigen and singular value decompositions of a matrix. Each one is only run the first
+ * time it's asked for, so sqrt A, cbrt A and A^0.5 can all share the same work, as can det A, rank A,
+ * norm A and cond A.
+ */
+final class MatrixDecomposition {
+    // ejml works out determinants this small from minors, which is exact for integers
+    private static final int MINOR_DETERMINANT_MAX_SIZE = 6;
+
+    private final DenseMatrix64F mMatrix;
+
+    private Double mDeterminant;
+
+    private double[] mEigenvalues;
+    private double[] mEigenvalueMagnitudes;
+    private boolean mHasComplexEigenvalues;
+    private DenseMatrix64F mEigenvectors;
+    private DenseMatrix64F mEigenvectorsInverse;
+
+    private double[] mSingularValues;
+    private DenseMatrix64F mU;
+    private DenseMatrix64F mV;
+
+    MatrixDecomposition(DenseMatrix64F matrix) {
+        mMatrix = matrix.copy();
+    }
+
+    private boolean isSquare() {
+        return mMatrix.numRows == mMatrix.numCols;
+    }
+
+    synchronized double getDeterminant() throws SyntaxException {
+        if(!isSquare()) throw new SyntaxException();
+        if(mDeterminant == null) {
+            if(mMatrix.numRows <= MINOR_DETERMINANT_MAX_SIZE) {
+                mDeterminant = CommonOps.det(mMatrix);
+            } else {
+                LUDecomposition<DenseMatrix64F> decomp = DecompositionFactory.lu(mMatrix.numRows, mMatrix.numCols);
+                if(!decomp.decompose(mMatrix.copy())) throw new SyntaxException();
+                mDeterminant = decomp.computeDeterminant();
+            }
+        }
+        return mDeterminant;
+    }
+
+    /**
+     * Returns the number of singular values that aren't (numerically) zero
+     * */
+    synchronized int getRank() throws SyntaxException {
+        decomposeSingular();
+        double tolerance = Math.max(mMatrix.numRows, mMatrix.numCols) * getLargestSingularValue() * UtilEjml.EPS;
+        int rank = 0;
+        for(double value : mSingularValues) {
+            if(value > tolerance) rank++;
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the spectral norm (the largest singular value). For a vector, that's its length.
+     * */
+    synchronized double getNorm() throws SyntaxException {
+        decomposeSingular();
+        return getLargestSingularValue();
+    }
+
+    /**
+     * Returns the condition number, the ratio of the largest singular value to the smallest
+     * */
+    synchronized double getConditionNumber() throws SyntaxException {
+        decomposeSingular();
+        double smallest = Double.POSITIVE_INFINITY;
+        for(double value : mSingularValues) {
+            smallest = Math.min(smallest, value);
+        }
+        return getLargestSingularValue() / smallest;
+    }
+
+    private double getLargestSingularValue() {
+        double largest = 0;
+        for(double value : mSingularValues) {
+            largest = Math.max(largest, value);
+        }
+        return largest;
+    }
+
+    /**
+     * Returns the eigenvalues, smallest first. Throws if any are complex.
+     * */
+    synchronized double[] getEigenvalues() throws SyntaxException {
+        decomposeEigen();
+        if(mHasComplexEigenvalues) throw new SyntaxException();
+        return mEigenvalues.clone();
+    }
+
+    /**
+     * Returns the magnitude of each eigenvalue, in the same order as the eigenvectors
+     * */
+    synchronized double[] getEigenvalueMagnitudes() throws SyntaxException {
+        decomposeEigen();
+        return mEigenvalueMagnitudes.clone();
+    }
+
+    /**
+     * Rebuilds the matrix from its eigenvectors, but with new eigenvalues
+     * */
+    synchronized DenseMatrix64F withEigenvalues(double[] eigenvalues) throws SyntaxException {
+        decomposeEigen();
+        if(mEigenvectors == null) throw new SyntaxException(); // Complex eigenvalues
+        if(mEigenvectorsInverse == null) {
+            DenseMatrix64F inverse = new DenseMatrix64F(mEigenvectors.numRows, mEigenvectors.numCols);
+            if(!CommonOps.invert(mEigenvectors, inverse)) throw new SyntaxException();
+            mEigenvectorsInverse = inverse;
+        }
+        int n = mMatrix.numRows;
+        DenseMatrix64F temp = new DenseMatrix64F(n, n);
+        CommonOps.mult(mEigenvectors, CommonOps.diag(eigenvalues), temp);
+        DenseMatrix64F result = new DenseMatrix64F(n, n);
+        CommonOps.mult(temp, mEigenvectorsInverse, result);
+        return result;
+    }
+
+    synchronized double[] getSingularValues() throws SyntaxException {
+        decomposeSingular();
+        return mSingularValues.clone();
+    }
+
+    /**
+     * Rebuilds the matrix from its singular vectors, but with new singular values
+     * */
+    synchronized DenseMatrix64F withSingularValues(double[] singularValues) throws SyntaxException {
+        decomposeSingular();
+        DenseMatrix64F temp = new DenseMatrix64F(mU.numRows, singularValues.length);
+        CommonOps.mult(mU, CommonOps.diag(singularValues), temp);
+        DenseMatrix64F result = new DenseMatrix64F(mMatrix.numRows, mMatrix.numCols);
+        CommonOps.multTransB(temp, mV, result);
+        return result;
+    }
+
+    private void decomposeEigen() throws SyntaxException {
+        if(mEigenvalues != null) return;
+        if(!isSquare()) throw new SyntaxException();
+
+        int n = mMatrix.numRows;
+        EigenDecomposition<DenseMatrix64F> decomp = DecompositionFactory.eig(n, true);
+        if(!decomp.decompose(mMatrix.copy())) throw new SyntaxException();
+
+        double[] eigenvalues = new double[n];
+        double[] magnitudes = new double[n];
+        boolean complex = false;
+        DenseMatrix64F eigenvectors = new DenseMatrix64F(n, n);
+        for(int k = 0; k < n; k++) {
+            Complex64F eigenvalue = decomp.getEigenvalue(k);
+            eigenvalues[k] = eigenvalue.getReal();
+            magnitudes[k] = eigenvalue.getMagnitude();
+            complex |= !eigenvalue.isReal();
+
+            DenseMatrix64F col = decomp.getEigenVector(k);
+            if(col == null) {
+                // Complex eigenvalue, so there's no real eigenvector
+                eigenvectors = null;
+            } else if(eigenvectors != null) {
+                for(int l = 0; l < n; l++) {
+                    eigenvectors.set(k, l, col.get(l, 0));
+                }
+            }
+        }
+        Arrays.sort(eigenvalues);
+
+        mEigenvectors = eigenvectors;
+        mEigenvalueMagnitudes = magnitudes;
+        mHasComplexEigenvalues = complex;
+        mEigenvalues = eigenvalues;
+    }
+
+    private void decomposeSingular() throws SyntaxException {
+        if(mSingularValues != null) return;
+
+        int m = mMatrix.numRows;
+        int n = mMatrix.numCols;
+        SingularValueDecomposition<DenseMatrix64F> decomp = DecompositionFactory.svd(m, n, true, true, true);
+        if(!decomp.decompose(mMatrix.copy())) throw new SyntaxException();
+
+        DenseMatrix64F W = decomp.getW(null);
+        double[] singularValues = new double[W.numCols];
+        for(int i = 0; i < singularValues.length; i++) {
+            singularValues[i] = W.get(i, i);
+        }
+
+        mU = decomp.getU(null, false);
+        mV = decomp.getV(null, false);
+        mSingularValues = singularValues;
+    }
+}
@@ -0,0 +1,586 @@
+package com.xlythe.math;
+
+import org.ejml.UtilEjml;
+import org.ejml.alg.dense.decomposition.chol.CholeskyDecompositionInner;
+import org.ejml.alg.dense.decomposition.lu.LUDecompositionAlt;
+import org.ejml.alg.dense.linsol.chol.LinearSolverChol;
+import org.ejml.alg.dense.linsol.lu.LinearSolverLu;
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.factory.LinearSolver;
+import org.ejml.ops.CommonOps;
+import org.ejml.ops.MatrixFeatures;
+import org.javia.arity.SyntaxException;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class MatrixModule extends Module {
+    private static final Logger LOGGER = Logger.getLogger(MatrixModule.class.getSimpleName());
+    private static final int MAX_DECOMPOSITIONS = 8;
+    private static final int CHOLESKY_MIN_SIZE = 16;
+
+    // Recently decomposed matrices, keyed by their contents
+    private final Map<MatrixKey, MatrixDecomposition> mDecompositions = new LinkedHashMap<MatrixKey, MatrixDecomposition>(MAX_DECOMPOSITIONS, 1f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<MatrixKey, MatrixDecomposition> eldest) {
+            return size() > MAX_DECOMPOSITIONS;
+        }
+    };
+
+    MatrixModule(Solver solver) {
+        super(solver);
+    }
+
+    static DenseMatrix64F addScalar(DenseMatrix64F mat, double scalar) {
+        DenseMatrix64F temp = new DenseMatrix64F(mat.numRows, mat.numCols);
+        CommonOps.add(mat, scalar, temp);
+        return temp;
+    }
+
+    // The largest n whose factorial fits in a double
+    private static final int MAX_FACTORIAL = 170;
+
+    private static double fact(int n) {
+        double m = 1;
+        for(int i = 2; i <= n; i++)
+            m *= i;
+
+        return m;
+    }
+
+    private static String numToString(double arg) {
+        // Cut off very small arguments
+        if(Math.abs(arg) < 1.0E-10) return "0";
+
+        String temp = Double.toString(arg).replace('E', 'e');
+        if(temp.endsWith(".0")) temp = temp.substring(0, temp.length() - 2);
+        return temp;
+    }
+
+    private static String printMatrix(DenseMatrix64F mat) {
+        StringBuilder buffer = new StringBuilder("[");
+        int m = mat.numRows;
+        int n = mat.numCols;
+        for(int i = 0; i < m; i++) {
+            buffer.append('[');
+            for(int j = 0; j < n; j++) {
+                buffer.append(numToString(mat.data[i * n + j]));
+                if(j != n - 1) buffer.append(',');
+            }
+            buffer.append(']');
+        }
+        buffer.append(']');
+
+        return buffer.toString();
+    }
+
+    private static String printMatrix(SparseMatrix mat) {
+        StringBuilder buffer = new StringBuilder("[");
+        for(int i = 0; i < mat.numRows; i++) {
+            buffer.append('[');
+            int p = mat.rowStart[i];
+            for(int j = 0; j < mat.numCols; j++) {
+                if(p < mat.rowStart[i + 1] && mat.columns[p] == j) {
+                    buffer.append(numToString(mat.values[p++]));
+                } else {
+                    buffer.append('0');
+                }
+                if(j != mat.numCols - 1) buffer.append(',');
+            }
+            buffer.append(']');
+        }
+        buffer.append(']');
+
+        return buffer.toString();
+    }
+
+    double gatherScalar(String text) throws SyntaxException {
+        if(!Character.isDigit(text.charAt(1))) throw new SyntaxException();
+        return Double.parseDouble(text.substring(1));
+    }
+
+    /**
+     * Undo anything changed in clean(). The resulting String won't be parsable by MatrixModule
+     * anymore, but it'll look right to Solver.
+     * */
+    private String dirty(String input) {
+        input = input.replace('-', Constants.MINUS);
+        return input;
+    }
+
+    /**
+     * Modify the text to make it easier to manipulate (eg, replacing all minus signs with a standard sign).
+     * */
+    private String clean(String input) {
+        // I never realized negative numbers could be so difficult.
+        input = input.replace(Constants.MINUS, '-');
+        // All remaining instances of U+2212 will be on negative numbers.
+        // They will be counted as whole tokens.
+        return input;
+    }
+
+    String evaluateMatrices(String text) throws SyntaxException {
+        text = getSolver().convertToDecimal(text);
+        MatrixValue value = new MatrixParser(clean(text)).parse().evaluate(this);
+
+        // This is the only time the result is turned back into text
+        String result;
+        if(value.isSparse()) result = printMatrix(value.getSparse());
+        else if(value.isMatrix()) result = printMatrix(value.getMatrix());
+        else result = numToString(value.getScalar());
+        return getSolver().getBaseModule().changeBase(dirty(result), getSolver().getBase());
+    }
+
+    MatrixValue applyFunc(String func, MatrixValue arg) throws SyntaxException {
+        MatrixValue result = evaluateFunc(func, arg);
+
+        // Functions might generate NaN. Return error if so.
+        if(result.isMatrix() && MatrixFeatures.hasNaN(result.getMatrix())) throw new SyntaxException();
+        if(!result.isMatrix() && Double.isNaN(result.getScalar())) throw new SyntaxException();
+        return result;
+    }
+
+    private MatrixValue evaluateFunc(String func, MatrixValue arg) throws SyntaxException {
+        ElementwiseFunction elementwise = ElementwiseFunction.forName(func);
+        if(elementwise != null) {
+            if(arg.isMatrix()) return MatrixValue.of(elementwise.apply(arg.getMatrix()));
+            else return MatrixValue.of(elementwise.apply(arg.getScalar()));
+        } else if(func.equals("\u221a")) {// sqrt
+            if(arg.isMatrix()) {
+                MatrixDecomposition decomp = decompose(arg.getMatrix());
+                double[] evals = decomp.getEigenvalueMagnitudes();
+                for(int i1 = 0; i1 < evals.length; i1++) {
+                    evals[i1] = Math.sqrt(evals[i1]);
+                }
+                return MatrixValue.of(decomp.withEigenvalues(evals));
+            } else return MatrixValue.of(Math.sqrt(arg.getScalar()));
+        } else if(func.equals("cbrt")) {
+            if(arg.isMatrix()) {
+                MatrixDecomposition decomp = decompose(arg.getMatrix());
+                double[] evals = decomp.getEigenvalueMagnitudes();
+                for(int i1 = 0; i1 < evals.length; i1++) {
+                    evals[i1] = Math.cbrt(evals[i1]);
+                }
+                return MatrixValue.of(decomp.withEigenvalues(evals));
+            } else return MatrixValue.of(Math.cbrt(arg.getScalar()));
+        } else if(func.equals("det")) {
+            if(arg.isMatrix()) {
+                if(!arg.isSquare()) throw new SyntaxException();
+                if(arg.isSparse()) {
+                    SparseLU lu = SparseLU.decompose(arg.getSparse());
+                    if(lu != null) return MatrixValue.of(lu.determinant());
+                }
+                return MatrixValue.of(decompose(arg.getMatrix()).getDeterminant());
+            } else return arg; // Determinant of a scalar is equivalent to det. of
+            // 1x1 matrix, which is the matrix' one element
+        } else if(func.equals("trace")) {
+            if(arg.isMatrix()) return MatrixValue.of(trace(arg));
+            else return arg;
+        } else if(func.equals("norm")) {
+            if(arg.isMatrix()) return MatrixValue.of(decompose(arg.getMatrix()).getNorm());
+            else return MatrixValue.of(Math.abs(arg.getScalar()));
+        } else if(func.equals("rank")) {
+            if(arg.isMatrix()) return MatrixValue.of(decompose(arg.getMatrix()).getRank());
+            else return MatrixValue.of(arg.getScalar() == 0 ? 0 : 1);
+        } else if(func.equals("cond")) {
+            if(arg.isMatrix()) return MatrixValue.of(decompose(arg.getMatrix()).getConditionNumber());
+            else return MatrixValue.of(arg.getScalar() == 0 ? Double.POSITIVE_INFINITY : 1);
+        } else if(func.equals("eig")) {
+            // The eigenvalues, as a column
+            if(arg.isMatrix()) {
+                double[] eigenvalues = decompose(arg.getMatrix()).getEigenvalues();
+                return MatrixValue.of(new DenseMatrix64F(eigenvalues.length, 1, true, eigenvalues));
+            } else return arg;
+        } else throw new SyntaxException();
+    }
+
+    /**
+     * Returns the sum of the diagonal. Cheap enough that it doesn't need a decomposition.
+     * */
+    private static double trace(MatrixValue arg) throws SyntaxException {
+        if(!arg.isSquare()) throw new SyntaxException();
+        double trace = 0;
+        if(arg.isSparse()) {
+            SparseMatrix sparse = arg.getSparse();
+            for(int i = 0; i < sparse.numRows; i++) {
+                for(int p = sparse.rowStart[i]; p < sparse.rowStart[i + 1]; p++) {
+                    if(sparse.columns[p] == i) trace += sparse.values[p];
+                }
+            }
+        } else {
+            DenseMatrix64F matrix = arg.getMatrix();
+            for(int i = 0; i < matrix.numRows; i++) {
+                trace += matrix.data[i * matrix.numCols + i];
+            }
+        }
+        return trace;
+    }
+
+    MatrixValue applyPow(MatrixValue l, MatrixValue r) throws SyntaxException {
+        if(l.isMatrix() && r.isMatrix()) throw new SyntaxException();
+        else if(l.isMatrix()) return pow(l, r.getScalar());
+        else if(r.isMatrix()) return pow(r, l.getScalar());
+        else return MatrixValue.of(Math.pow(l.getScalar(), r.getScalar()));
+    }
+
+    private MatrixValue pow(MatrixValue a, double b) throws SyntaxException {
+        if(!a.isSquare()) throw new SyntaxException();
+        int n = a.numRows();
+        if(b > Math.floor(b)) {
+            // A^b = U S^b V^T, with S being the singular values
+            MatrixDecomposition decomp = decompose(a.getMatrix());
+            double[] S = decomp.getSingularValues();
+            for(int i = 0; i < S.length; i++) {
+                S[i] = Math.pow(S[i], b);
+            }
+            return MatrixValue.of(decomp.withSingularValues(S));
+        } else {
+            // Exponentiation by squaring, so A^1000 is 15 multiplications instead of 999
+            long equiv = Math.round(b);
+            if(equiv == 0) {
+                return a.isSparse() ? MatrixValue.of(SparseMatrix.identity(n)) : MatrixValue.of(CommonOps.identity(n));
+            }
+
+            MatrixValue base = equiv < 0 ? inverse(a) : a;
+            long e = Math.abs(equiv);
+            MatrixValue result = null;
+            while(true) {
+                if((e & 1) == 1) result = result == null ? base : mult(result, base);
+                e >>= 1;
+                if(e == 0) return result;
+                base = mult(base, base);
+            }
+        }
+    }
+
+    /**
+     * Returns the (possibly already computed) decomposition of the given matrix
+     * */
+    private MatrixDecomposition decompose(DenseMatrix64F matrix) throws SyntaxException {
+        MatrixKey key = new MatrixKey(matrix);
+        synchronized(mDecompositions) {
+            MatrixDecomposition decomp = mDecompositions.get(key);
+            if(decomp != null) return decomp;
+        }
+        MatrixDecomposition decomp = new MatrixDecomposition(matrix);
+        synchronized(mDecompositions) {
+            mDecompositions.put(key, decomp);
+        }
+        return decomp;
+    }
+
+    MatrixValue applyMult(MatrixValue l, MatrixValue r) throws SyntaxException {
+        if(l.isMatrix() && r.isMatrix()) {
+            return mult(l, r);
+        } else if(l.isMatrix()) {
+            return scale(l, r.getScalar());
+        } else if(r.isMatrix()) {
+            return scale(r, l.getScalar());
+        } else {
+            return MatrixValue.of(l.getScalar() * r.getScalar());
+        }
+    }
+
+    MatrixValue applyDiv(MatrixValue l, MatrixValue r) throws SyntaxException {
+        if(l.isMatrix() && r.isMatrix()) {
+            return divide(l, r);
+        } else if(l.isMatrix()) {
+            return scale(l, 1.0 / r.getScalar());
+        } else if(r.isMatrix()) {
+            return scale(inverse(r), l.getScalar());
+        } else {
+            return MatrixValue.of(l.getScalar() / r.getScalar());
+        }
+    }
+
+    MatrixValue applyPlus(MatrixValue l, MatrixValue r) throws SyntaxException {
+        if(l.isMatrix() && r.isMatrix()) {
+            return add(l, r, 1, "plus");
+        } else if(l.isMatrix()) {
+            return MatrixValue.of(addScalar(l.getMatrix(), r.getScalar()));
+        } else if(r.isMatrix()) {
+            return MatrixValue.of(addScalar(r.getMatrix(), l.getScalar()));
+        } else {
+            return MatrixValue.of(l.getScalar() + r.getScalar());
+        }
+    }
+
+    MatrixValue applySub(MatrixValue l, MatrixValue r) throws SyntaxException {
+        if(l.isMatrix() && r.isMatrix()) {
+            return add(l, r, -1, "minus");
+        } else if(l.isMatrix()) {
+            return MatrixValue.of(addScalar(l.getMatrix(), -r.getScalar()));
+        } else if(r.isMatrix()) {
+            // s - M, not M - s
+            return MatrixValue.of(addScalar(scale(r.getMatrix(), -1), l.getScalar()));
+        } else {
+            return MatrixValue.of(l.getScalar() - r.getScalar());
+        }
+    }
+
+    MatrixValue applyTranspose(MatrixValue arg) throws SyntaxException {
+        if(arg.isSparse()) return MatrixValue.of(arg.getSparse().transpose());
+        else if(arg.isMatrix()) return MatrixValue.of(CommonOps.transpose(arg.getMatrix(), null));
+        else return arg; // A scalar is its own transpose
+    }
+
+    MatrixValue applyInverse(MatrixValue arg) throws SyntaxException {
+        LOGGER.fine("Found an inverse");
+        if(arg.isMatrix()) return inverse(arg);
+        else return MatrixValue.of(1.0 / arg.getScalar());
+    }
+
+    MatrixValue applyFactorial(MatrixValue arg) throws SyntaxException {
+        double n = arg.getScalar(); // Matrices have no factorial
+        if(n < 0 || n != Math.floor(n) || n > MAX_FACTORIAL) throw new SyntaxException();
+        return MatrixValue.of(fact((int) n));
+    }
+
+    /**
+     * Returns a + sign * b, keeping the result sparse if both sides are
+     * */
+    private static MatrixValue add(MatrixValue a, MatrixValue b, double sign, String name) throws SyntaxException {
+        if(a.numRows() != b.numRows() || a.numCols() != b.numCols()) {
+            LOGGER.log(Level.SEVERE, "Matrix operation " + name + " not allowed on " + a.numRows() + "x" + a.numCols()
+                    + " and " + b.numRows() + "x" + b.numCols());
+            throw new SyntaxException();
+        }
+        if(a.isSparse() && b.isSparse()) {
+            return MatrixValue.of(a.getSparse().plus(b.getSparse(), sign));
+        } else if(b.isSparse()) {
+            DenseMatrix64F c = a.getMatrix().copy();
+            b.getSparse().addTo(c, sign);
+            return MatrixValue.of(c);
+        } else if(a.isSparse()) {
+            DenseMatrix64F c = scale(b.getMatrix(), sign);
+            a.getSparse().addTo(c, 1);
+            return MatrixValue.of(c);
+        } else {
+            DenseMatrix64F c = new DenseMatrix64F(a.numRows(), a.numCols());
+            CommonOps.add(a.getMatrix(), sign, b.getMatrix(), c);
+            return MatrixValue.of(c);
+        }
+    }
+
+    /**
+     * Returns a * b, with the kernel picked by which sides are sparse
+     * */
+    private static MatrixValue mult(MatrixValue a, MatrixValue b) throws SyntaxException {
+        if(a.numCols() != b.numRows()) throw new SyntaxException();
+        if(a.isSparse() && b.isSparse()) return MatrixValue.of(a.getSparse().mult(b.getSparse()));
+        else if(a.isSparse()) return MatrixValue.of(a.getSparse().mult(b.getMatrix()));
+        else if(b.isSparse()) return MatrixValue.of(SparseMatrix.mult(a.getMatrix(), b.getSparse()));
+        else return MatrixValue.of(mult(a.getMatrix(), b.getMatrix()));
+    }
+
+    private static MatrixValue scale(MatrixValue a, double scalar) throws SyntaxException {
+        if(a.isSparse()) return MatrixValue.of(a.getSparse().scale(scalar));
+        else return MatrixValue.of(scale(a.getMatrix(), scalar));
+    }
+
+    /**
+     * Returns a * b^-1. A sparse b is solved with a sparse LU, when it isn't singular.
+     * */
+    private static MatrixValue divide(MatrixValue a, MatrixValue b) throws SyntaxException {
+        if(a.numCols() != b.numCols()) throw new SyntaxException();
+        if(b.isSparse()) {
+            // x b = a is the same system as b^T x^T = a^T, one row of a at a time
+            SparseLU lu = SparseLU.decompose(b.getSparse().transpose());
+            if(lu != null) {
+                DenseMatrix64F x = new DenseMatrix64F(a.numRows(), b.numRows());
+                double[] row = new double[a.numCols()];
+                for(int i = 0; i < a.numRows(); i++) {
+                    copyRow(a, i, row);
+                    System.arraycopy(lu.solve(row), 0, x.data, i * x.numCols, x.numCols);
+                }
+                return MatrixValue.of(x);
+            }
+        }
+        return MatrixValue.of(divide(a.getMatrix(), b.getMatrix()));
+    }
+
+    private static MatrixValue inverse(MatrixValue a) throws SyntaxException {
+        if(a.isSparse() && a.isSquare()) {
+            // The inverse of a sparse matrix is rarely sparse, so it comes back dense
+            int n = a.numRows();
+            return divide(MatrixValue.of(SparseMatrix.identity(n)), a);
+        }
+        return MatrixValue.of(inverse(a.getMatrix()));
+    }
+
+    private static void copyRow(MatrixValue a, int row, double[] out) throws SyntaxException {
+        if(a.isSparse()) {
+            SparseMatrix sparse = a.getSparse();
+            Arrays.fill(out, 0);
+            for(int p = sparse.rowStart[row]; p < sparse.rowStart[row + 1]; p++) {
+                out[sparse.columns[p]] = sparse.values[p];
+            }
+        } else {
+            System.arraycopy(a.getMatrix().data, row * out.length, out, 0, out.length);
+        }
+    }
+
+    private static DenseMatrix64F mult(DenseMatrix64F a, DenseMatrix64F b) throws SyntaxException {
+        if(a.numCols != b.numRows) throw new SyntaxException();
+        return MatrixMultiplication.mult(a, b);
+    }
+
+    private static DenseMatrix64F scale(DenseMatrix64F mat, double scalar) {
+        DenseMatrix64F temp = new DenseMatrix64F(mat.numRows, mat.numCols);
+        CommonOps.scale(scalar, mat, temp);
+        return temp;
+    }
+
+    /**
+     * Returns a * b^-1. When b is square and not singular, that's a linear solve rather than an inversion.
+     * */
+    private static DenseMatrix64F divide(DenseMatrix64F a, DenseMatrix64F b) throws SyntaxException {
+        if(a.numCols != b.numCols) throw new SyntaxException();
+
+        // x b = a is the same system as b^T x^T = a^T
+        LinearSolver<DenseMatrix64F> solver = solverFor(CommonOps.transpose(b, null));
+        if(solver == null) return mult(a, pseudoInverse(b));
+
+        DenseMatrix64F x = new DenseMatrix64F(b.numRows, a.numRows);
+        solver.solve(CommonOps.transpose(a, null), x);
+        return CommonOps.transpose(x, null);
+    }
+
+    private static DenseMatrix64F inverse(DenseMatrix64F mat) {
+        LinearSolver<DenseMatrix64F> solver = solverFor(mat);
+        if(solver == null) return pseudoInverse(mat);
+
+        DenseMatrix64F temp = new DenseMatrix64F(mat.numRows, mat.numCols);
+        solver.invert(temp);
+        return temp;
+    }
+
+    /**
+     * Returns a solver set up for the given matrix, or null if it isn't square or is too close to
+     * singular. Those are left to the pseudo-inverse.
+     * */
+    private static LinearSolver<DenseMatrix64F> solverFor(DenseMatrix64F mat) {
+        if(mat.numRows != mat.numCols) return null;
+        int n = mat.numRows;
+
+        // Cholesky is about twice as fast as LU, but only works on symmetric positive definite matrices.
+        // Its square roots also cost exact answers on small hand typed matrices (eg. dividing by [[1,0][0,2]]),
+        // where the speed doesn't matter anyway.
+        if(n >= CHOLESKY_MIN_SIZE && MatrixFeatures.isSymmetric(mat)) {
+            CholeskyDecompositionInner cholesky = new CholeskyDecompositionInner(true);
+            LinearSolverChol solver = new LinearSolverChol(cholesky);
+            // The pivots are the squares of L's diagonal
+            if(solver.setA(solver.modifiesA() ? mat.copy() : mat) && hasUsablePivots(cholesky.getT(), true)) {
+                return solver;
+            }
+        }
+
+        LUDecompositionAlt lu = new LUDecompositionAlt();
+        LinearSolverLu solver = new LinearSolverLu(lu);
+        if(solver.setA(solver.modifiesA() ? mat.copy() : mat) && hasUsablePivots(lu.getLU(), false)) {
+            return solver;
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if none of the pivots on the factor's diagonal are negligible next to the largest.
+     * ejml's quality() is the product of those ratios instead, which shrinks with size until
+     * even well conditioned 50x50 matrices look singular.
+     * */
+    private static boolean hasUsablePivots(DenseMatrix64F factor, boolean squared) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = 0;
+        for(int i = 0; i < factor.numRows; i++) {
+            double pivot = Math.abs(factor.get(i, i));
+            if(squared) pivot *= pivot;
+            min = Math.min(min, pivot);
+            max = Math.max(max, pivot);
+        }
+        return min > max * UtilEjml.EPS;
+    }
+
+    private static DenseMatrix64F pseudoInverse(DenseMatrix64F mat) {
+        DenseMatrix64F temp = new DenseMatrix64F(mat.numCols, mat.numRows);
+        CommonOps.pinv(mat, temp);
+        return temp;
+    }
+
+    /**
+     * Returns true if the text contains a matrix literal (eg. [[1,2][3,4]]) of plain numbers.
+     * This is a single pass over the text. The regex it replaces recursed once per cell,
+     * and overflowed the stack on large pasted matrices.
+     * */
+    boolean isMatrix(String text) {
+        char separator = getMatrixSeparator();
+        char decimal = getDecimalPoint();
+        for(int i = text.indexOf('['); i != -1; i = text.indexOf('[', i + 1)) {
+            if(isMatrixAt(text, i, separator, decimal)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the text at this index starts with '[', one or more rows, and ']'
+     * */
+    private static boolean isMatrixAt(String text, int index, char separator, char decimal) {
+        int length = text.length();
+        int i = index + 1;
+        int rows = 0;
+        while(i < length && text.charAt(i) == '[') {
+            i++;
+            while(true) {
+                // A cell: an optional sign, digits, and an optional decimal point followed by more digits
+                if(i < length && (text.charAt(i) == Constants.MINUS || text.charAt(i) == '-')) i++;
+                while(i < length && isHexDigit(text.charAt(i))) i++;
+                if(i < length && text.charAt(i) == decimal) {
+                    i++;
+                    while(i < length && isHexDigit(text.charAt(i))) i++;
+                }
+
+                if(i < length && text.charAt(i) == separator) i++;
+                else break;
+            }
+            if(i >= length || text.charAt(i) != ']') return false;
+            i++;
+            rows++;
+        }
+        return rows > 0 && i < length && text.charAt(i) == ']';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F');
+    }
+
+    /**
+     * DenseMatrix64F doesn't implement equals(), so this compares matrices by their contents
+     * */
+    private static final class MatrixKey {
+        private final int mRows;
+        private final int mColumns;
+        private final double[] mData;
+        private final int mHashCode;
+
+        MatrixKey(DenseMatrix64F matrix) {
+            mRows = matrix.numRows;
+            mColumns = matrix.numCols;
+            mData = Arrays.copyOf(matrix.data, matrix.getNumElements());
+            mHashCode = 31 * (31 * mRows + mColumns) + Arrays.hashCode(mData);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof MatrixKey)) return false;
+            MatrixKey other = (MatrixKey) o;
+            return mRows == other.mRows && mColumns == other.mColumns && Arrays.equals(mData, other.mData);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.xlythe.math;
+
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.ops.CommonOps;
+
+/**
+ * Matrix products. Small ones go straight to ejml. Large ones (eg. a pasted data set with hundreds
+ * of rows) are multiplied in cache sized blocks, with the rows of the result split across cores.
+ */
+final class MatrixMultiplication {
+    // Multiply-adds (rows * inner * columns) below which ejml's single threaded product wins
+    private static final long BLOCKED_THRESHOLD = 128L * 128L * 128L;
+
+    // Rows of a (and of b) taken per pass. 64 rows of a 512 wide b is 256KB, which stays in L2
+    // while a strip of a's rows is multiplied against it.
+    private static final int BLOCK = 64;
+
+    private MatrixMultiplication() {}
+
+    /**
+     * Returns a * b. The caller is expected to have checked that the sizes line up.
+     * */
+    static DenseMatrix64F mult(DenseMatrix64F a, DenseMatrix64F b) {
+        if((long) a.numRows * a.numCols * b.numCols < BLOCKED_THRESHOLD) {
+            DenseMatrix64F c = new DenseMatrix64F(a.numRows, b.numCols);
+            CommonOps.mult(a, b, c);
+            return c;
+        }
+        return multBlocked(a, b);
+    }
+
+    /**
+     * Returns a * b, always using the blocked and parallel product
+     * */
+    static DenseMatrix64F multBlocked(final DenseMatrix64F a, final DenseMatrix64F b) {
+        final DenseMatrix64F c = new DenseMatrix64F(a.numRows, b.numCols);
+        Parallel.forRange(a.numRows, BLOCK, new Parallel.Range() {
+            @Override
+            public void run(int start, int end) {
+                multRows(a, b, c, start, end);
+            }
+        });
+        return c;
+    }
+
+    /**
+     * Fills in rows [start, end) of c = a * b. c must start out zeroed.
+     * */
+    private static void multRows(DenseMatrix64F a, DenseMatrix64F b, DenseMatrix64F c, int start, int end) {
+        final int inner = a.numCols;
+        final int columns = b.numCols;
+        final double[] dataA = a.data;
+        final double[] dataB = b.data;
+        final double[] dataC = c.data;
+
+        for(int i0 = start; i0 < end; i0 += BLOCK) {
+            int i1 = Math.min(i0 + BLOCK, end);
+            for(int k0 = 0; k0 < inner; k0 += BLOCK) {
+                int k1 = Math.min(k0 + BLOCK, inner);
+
+                // i-k-j order, so the innermost loop walks rows of b and c in sequence.
+                // Four rows of c share each pass over a row of b.
+                int i = i0;
+                for(; i + 3 < i1; i += 4) {
+                    int rowA = i * inner;
+                    int rowC0 = i * columns;
+                    int rowC1 = rowC0 + columns;
+                    int rowC2 = rowC1 + columns;
+                    int rowC3 = rowC2 + columns;
+                    for(int k = k0; k < k1; k++) {
+                        double a0 = dataA[rowA + k];
+                        double a1 = dataA[rowA + inner + k];
+                        double a2 = dataA[rowA + 2 * inner + k];
+                        double a3 = dataA[rowA + 3 * inner + k];
+                        int rowB = k * columns;
+                        for(int j = 0; j < columns; j++) {
+                            double bkj = dataB[rowB + j];
+                            dataC[rowC0 + j] += a0 * bkj;
+                            dataC[rowC1 + j] += a1 * bkj;
+                            dataC[rowC2 + j] += a2 * bkj;
+                            dataC[rowC3 + j] += a3 * bkj;
+                        }
+                    }
+                }
+                for(; i < i1; i++) {
+                    int rowA = i * inner;
+                    int rowC = i * columns;
+                    for(int k = k0; k < k1; k++) {
+                        double aik = dataA[rowA + k];
+                        int rowB = k * columns;
+                        for(int j = 0; j < columns; j++) {
+                            dataC[rowC + j] += aik * dataB[rowB + j];
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
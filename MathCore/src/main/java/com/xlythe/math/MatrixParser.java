@@ -0,0 +1,516 @@
+package com.xlythe.math;
+
+import org.ejml.data.DenseMatrix64F;
+import org.javia.arity.SyntaxException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses a matrix equation (eg. [[1,2][3,4]]\u00d72+det[[1,0][0,1]]) into a tree in a single pass,
+ * so it can be evaluated without rewriting the text over and over.
+ *
+ * From loosest to tightest binding:
+ *   sum      := product (('+' | '-') product)*
+ *   product  := power (('\u00d7' | '\u00f7') power)*
+ *   power    := unary ('^' power)?
+ *   unary    := '-' unary | postfix
+ *   postfix  := primary ('^T' | '\uFEFF^-1' | '!' | '%')*
+ *   primary  := number | 'e' | '\u03c0' | matrix | '(' sum ')' | function unary
+ *   function := \u221a | cbrt | log | ln | (a)sin(d) | (a)cos(d) | (a)tan(d) | det | trace | norm | rank | cond | eig
+ *   matrix   := '[' ('[' sum (',' sum)* ']')+ ']'
+ *
+ * Expects minus signs to have already been replaced with '-'.
+ */
+class MatrixParser {
+    private static final String[] FUNCTIONS = {
+            "\u221a", "cbrt", "log", "ln", // sqrt
+            "asind", "acosd", "atand", "asin", "acos", "atan",
+            "sind", "cosd", "tand", "sin", "cos", "tan",
+            "det", "trace", "norm", "rank", "cond", "eig"
+    };
+
+    // Powers of ten that a double holds exactly
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Integers up to this are exact as doubles
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final String mInput;
+    private int mPosition;
+
+    MatrixParser(String input) {
+        mInput = input;
+    }
+
+    /**
+     * Parses the whole input. Forgives a single missing close parenthesis at the end.
+     * */
+    Node parse() throws SyntaxException {
+        int open = 0;
+        for(int i = 0; i < mInput.length(); i++) {
+            if(mInput.charAt(i) == '(') open++;
+            else if(mInput.charAt(i) == ')') open--;
+        }
+        if(open != 0 && open != 1) throw new SyntaxException(); // Unbalanced
+
+        mPosition = 0;
+        Node node = parseSum();
+        if(mPosition != mInput.length()) throw new SyntaxException();
+        return node;
+    }
+
+    private Node parseSum() throws SyntaxException {
+        Node node = parseProduct();
+        while(peek() == '+' || peek() == '-') {
+            char op = mInput.charAt(mPosition++);
+            node = new Binary(op, node, parseProduct());
+        }
+        return node;
+    }
+
+    private Node parseProduct() throws SyntaxException {
+        Node node = parsePower();
+        while(peek() == Constants.MUL || peek() == Constants.DIV) {
+            char op = mInput.charAt(mPosition++);
+            node = new Binary(op, node, parsePower());
+        }
+        return node;
+    }
+
+    private Node parsePower() throws SyntaxException {
+        Node node = parseUnary();
+        if(peek() == '^' && !isTranspose()) {
+            mPosition++;
+            // Right associative, so 2^3^2 is 2^9
+            node = new Binary('^', node, parsePower());
+        }
+        return node;
+    }
+
+    private Node parseUnary() throws SyntaxException {
+        if(peek() == '-') {
+            mPosition++;
+            Node operand = parseUnary();
+            if(operand instanceof Constant) {
+                return new Constant(-((Constant) operand).value);
+            }
+            return new Unary('-', operand);
+        }
+        return parsePostfix();
+    }
+
+    private Node parsePostfix() throws SyntaxException {
+        Node node = parsePrimary();
+        while(true) {
+            if(isTranspose()) {
+                mPosition += 2;
+                node = new Unary('T', node);
+            } else if(mInput.startsWith("\uFEFF^-1", mPosition)) {
+                mPosition += 4;
+                node = new Unary('I', node);
+            } else if(peek() == '!') {
+                mPosition++;
+                node = new Unary('!', node);
+            } else if(peek() == '%') {
+                mPosition++;
+                node = new Unary('%', node);
+            } else {
+                return node;
+            }
+        }
+    }
+
+    private Node parsePrimary() throws SyntaxException {
+        char c = peek();
+        if(isDigit(c) || c == '.') {
+            return parseNumber();
+        }
+        if(c == '[') {
+            return parseMatrix();
+        }
+        if(c == '(') {
+            mPosition++;
+            Node node = parseSum();
+            // A missing ) at the end is forgiven
+            if(mPosition < mInput.length()) {
+                if(peek() != ')') throw new SyntaxException();
+                mPosition++;
+            }
+            return node;
+        }
+        if(c == '\u03c0') {// pi
+            mPosition++;
+            return new Constant(Math.PI);
+        }
+        for(String function : FUNCTIONS) {
+            if(mInput.startsWith(function, mPosition)) {
+                mPosition += function.length();
+                return new Function(function, parseUnary());
+            }
+        }
+        if(c == 'e' && !isLetter(peekAhead(1))) {
+            mPosition++;
+            return new Constant(Math.E);
+        }
+        throw new SyntaxException();
+    }
+
+    private Node parseNumber() throws SyntaxException {
+        int start = mPosition;
+        while(isDigit(peek()) || peek() == '.') {
+            mPosition++;
+        }
+        // Scientific notation (eg. 1e-5), as long as it's not e the constant
+        if(peek() == 'e' || peek() == 'E') {
+            int exponent = mPosition + 1;
+            if(exponent < mInput.length() && (mInput.charAt(exponent) == '-' || mInput.charAt(exponent) == '+')) {
+                exponent++;
+            }
+            if(exponent < mInput.length() && isDigit(mInput.charAt(exponent))) {
+                mPosition = exponent;
+                while(isDigit(peek())) {
+                    mPosition++;
+                }
+            }
+        }
+        try {
+            return new Constant(Double.parseDouble(mInput.substring(start, mPosition)));
+        } catch(NumberFormatException e) {
+            throw new SyntaxException();
+        }
+    }
+
+    private Node parseMatrix() throws SyntaxException {
+        Node numeric = parseNumericMatrix();
+        if(numeric != null) return numeric;
+
+        expect('[');
+        List<Node> cells = new ArrayList<>();
+        int rows = 0;
+        int columns = -1;
+        do {
+            expect('[');
+            int length = 0;
+            do {
+                if(peek() == ',' || peek() == ']') throw new SyntaxException(); // Empty cell
+                cells.add(parseSum());
+                length++;
+            } while(consume(','));
+            expect(']');
+
+            // Every row must be the same length
+            if(columns == -1) columns = length;
+            if(length != columns) throw new SyntaxException();
+            rows++;
+        } while(peek() == '[');
+        expect(']');
+        return new MatrixLiteral(rows, columns, cells.toArray(new Node[cells.size()]));
+    }
+
+    /**
+     * Reads a matrix of plain numbers (the usual case, and the only one when a matrix is pasted
+     * in) straight into a double[], in one pass and without a Node per cell. Returns null and
+     * leaves the position where it was if any cell is more than a number.
+     * */
+    private Node parseNumericMatrix() {
+        int start = mPosition;
+        double[] values = new double[16];
+        int size = 0;
+        int rows = 0;
+        int columns = -1;
+
+        mPosition++;
+        do {
+            if(!consume('[')) return abandon(start);
+            int length = 0;
+            do {
+                if(size == values.length) values = Arrays.copyOf(values, size * 2);
+                if(!scanNumber(values, size++)) return abandon(start);
+                length++;
+            } while(consume(','));
+            if(!consume(']')) return abandon(start);
+
+            if(columns == -1) columns = length;
+            if(length != columns) return abandon(start);
+            rows++;
+        } while(peek() == '[');
+        if(!consume(']')) return abandon(start);
+
+        return new NumericMatrix(rows, columns, Arrays.copyOf(values, size));
+    }
+
+    private Node abandon(int start) {
+        mPosition = start;
+        return null;
+    }
+
+    /**
+     * Reads an optionally negative number (eg. -12.5e3) into values[index]. Returns false,
+     * without a meaningful position, if there isn't one or it isn't followed by ',' or ']'.
+     * */
+    private boolean scanNumber(double[] values, int index) {
+        int start = mPosition;
+        boolean negative = consume('-');
+        int numberStart = mPosition;
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        while(true) {
+            char c = peek();
+            if(isDigit(c)) {
+                if(mantissa != 0 || c != '0') digits++;
+                if(digits <= 18) mantissa = mantissa * 10 + (c - '0');
+                if(fraction) fractionDigits++;
+            } else if(c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+            mPosition++;
+        }
+        if(mPosition == numberStart || (fraction && mPosition == numberStart + 1)) return false;
+
+        int exponent = 0;
+        if(peek() == 'e' || peek() == 'E') {
+            mPosition++;
+            boolean negativeExponent = peek() == '-';
+            if(peek() == '-' || peek() == '+') mPosition++;
+            if(!isDigit(peek())) return false;
+            while(isDigit(peek())) {
+                // Anything this large is infinity or zero either way
+                if(exponent < 10000) exponent = exponent * 10 + (peek() - '0');
+                mPosition++;
+            }
+            if(negativeExponent) exponent = -exponent;
+        }
+        if(peek() != ',' && peek() != ']') return false;
+
+        double value;
+        int scale = exponent - fractionDigits;
+        if(digits <= 18 && mantissa <= MAX_EXACT_MANTISSA && Math.abs(scale) < POWERS_OF_TEN.length) {
+            // Both sides are exact, so one multiply or divide rounds correctly
+            value = scale >= 0 ? mantissa * POWERS_OF_TEN[scale] : mantissa / POWERS_OF_TEN[-scale];
+        } else {
+            try {
+                value = Double.parseDouble(mInput.substring(numberStart, mPosition));
+            } catch(NumberFormatException e) {
+                mPosition = start;
+                return false;
+            }
+        }
+        values[index] = negative ? -value : value;
+        return true;
+    }
+
+    private boolean isTranspose() {
+        return peek() == '^' && peekAhead(1) == 'T';
+    }
+
+    private char peek() {
+        return peekAhead(0);
+    }
+
+    private char peekAhead(int offset) {
+        int index = mPosition + offset;
+        return index < mInput.length() ? mInput.charAt(index) : '\0';
+    }
+
+    private boolean consume(char c) {
+        if(peek() == c) {
+            mPosition++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) throws SyntaxException {
+        if(!consume(c)) throw new SyntaxException();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * A piece of a matrix equation. Evaluates to either a scalar or a matrix.
+     * */
+    abstract static class Node {
+        abstract MatrixValue evaluate(MatrixModule module) throws SyntaxException;
+    }
+
+    static class Constant extends Node {
+        final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        MatrixValue evaluate(MatrixModule module) {
+            return MatrixValue.of(value);
+        }
+    }
+
+    static class MatrixLiteral extends Node {
+        final int rows;
+        final int columns;
+        final Node[] cells;
+
+        MatrixLiteral(int rows, int columns, Node[] cells) {
+            this.rows = rows;
+            this.columns = columns;
+            this.cells = cells;
+        }
+
+        @Override
+        MatrixValue evaluate(MatrixModule module) throws SyntaxException {
+            int zeros = 0;
+            for(Node cell : cells) {
+                if(cell instanceof Constant && ((Constant) cell).value == 0) zeros++;
+            }
+
+            // Mostly zeros (eg. a pasted identity or banded matrix) is built straight into sparse form
+            if(SparseMatrix.isWorthwhile(rows, columns, cells.length - zeros)) {
+                SparseMatrix.Builder builder = new SparseMatrix.Builder(rows, columns, cells.length - zeros);
+                for(int i = 0; i < rows; i++) {
+                    for(int j = 0; j < columns; j++) {
+                        builder.add(j, cells[i * columns + j].evaluate(module).getScalar());
+                    }
+                    builder.endRow();
+                }
+                return MatrixValue.of(builder.build());
+            }
+
+            DenseMatrix64F matrix = new DenseMatrix64F(rows, columns);
+            for(int i = 0; i < cells.length; i++) {
+                // No matrices within matrices
+                matrix.data[i] = cells[i].evaluate(module).getScalar();
+            }
+            return MatrixValue.of(matrix);
+        }
+    }
+
+    /**
+     * A matrix literal made up only of numbers
+     * */
+    static class NumericMatrix extends Node {
+        final int rows;
+        final int columns;
+        final double[] values;
+
+        NumericMatrix(int rows, int columns, double[] values) {
+            this.rows = rows;
+            this.columns = columns;
+            this.values = values;
+        }
+
+        @Override
+        MatrixValue evaluate(MatrixModule module) {
+            int nonZeros = 0;
+            for(double value : values) {
+                if(value != 0) nonZeros++;
+            }
+
+            if(SparseMatrix.isWorthwhile(rows, columns, nonZeros)) {
+                SparseMatrix.Builder builder = new SparseMatrix.Builder(rows, columns, nonZeros);
+                for(int i = 0; i < rows; i++) {
+                    for(int j = 0; j < columns; j++) {
+                        builder.add(j, values[i * columns + j]);
+                    }
+                    builder.endRow();
+                }
+                return MatrixValue.of(builder.build());
+            }
+
+            // Copied, so evaluating the tree twice can't share a matrix
+            return MatrixValue.of(new DenseMatrix64F(rows, columns, true, values));
+        }
+    }
+
+    static class Unary extends Node {
+        final char op;
+        final Node operand;
+
+        Unary(char op, Node operand) {
+            this.op = op;
+            this.operand = operand;
+        }
+
+        @Override
+        MatrixValue evaluate(MatrixModule module) throws SyntaxException {
+            MatrixValue value = operand.evaluate(module);
+            switch(op) {
+                case '-':
+                    return module.applyMult(MatrixValue.of(-1), value);
+                case 'T':
+                    return module.applyTranspose(value);
+                case 'I':
+                    return module.applyInverse(value);
+                case '!':
+                    return module.applyFactorial(value);
+                case '%':
+                    return module.applyMult(value, MatrixValue.of(0.01));
+                default:
+                    throw new SyntaxException();
+            }
+        }
+    }
+
+    static class Binary extends Node {
+        final char op;
+        final Node left;
+        final Node right;
+
+        Binary(char op, Node left, Node right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        MatrixValue evaluate(MatrixModule module) throws SyntaxException {
+            MatrixValue l = left.evaluate(module);
+            MatrixValue r = right.evaluate(module);
+            switch(op) {
+                case '+':
+                    return module.applyPlus(l, r);
+                case '-':
+                    return module.applySub(l, r);
+                case Constants.MUL:
+                    return module.applyMult(l, r);
+                case Constants.DIV:
+                    return module.applyDiv(l, r);
+                case '^':
+                    return module.applyPow(l, r);
+                default:
+                    throw new SyntaxException();
+            }
+        }
+    }
+
+    static class Function extends Node {
+        final String name;
+        final Node argument;
+
+        Function(String name, Node argument) {
+            this.name = name;
+            this.argument = argument;
+        }
+
+        @Override
+        MatrixValue evaluate(MatrixModule module) throws SyntaxException {
+            return module.applyFunc(name, argument.evaluate(module));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.xlythe.math;
+
+import org.ejml.data.DenseMatrix64F;
+import org.javia.arity.SyntaxException;
+
+/**
+ * A partial result of a matrix equation, either a scalar or a matrix. Matrices are passed
+ * between operators as DenseMatrix64F (or SparseMatrix, if they're mostly zeros) and only
+ * turned into text once, for display.
+ */
+final class MatrixValue {
+    private final double mScalar;
+    private final SparseMatrix mSparse;
+    private DenseMatrix64F mMatrix;
+
+    private MatrixValue(double scalar, DenseMatrix64F matrix, SparseMatrix sparse) {
+        mScalar = scalar;
+        mMatrix = matrix;
+        mSparse = sparse;
+    }
+
+    static MatrixValue of(double scalar) {
+        return new MatrixValue(scalar, null, null);
+    }
+
+    static MatrixValue of(DenseMatrix64F matrix) {
+        return new MatrixValue(0, matrix, null);
+    }
+
+    /**
+     * Wraps a sparse matrix, unless it has filled up enough that it'd be faster as a dense one
+     * */
+    static MatrixValue of(SparseMatrix sparse) {
+        if(!SparseMatrix.isWorthwhile(sparse.numRows, sparse.numCols, sparse.getNonZeroCount())) {
+            return of(sparse.toDense());
+        }
+        return new MatrixValue(0, null, sparse);
+    }
+
+    boolean isMatrix() {
+        return mMatrix != null || mSparse != null;
+    }
+
+    boolean isSparse() {
+        return mSparse != null;
+    }
+
+    boolean isSquare() {
+        return isMatrix() && numRows() == numCols();
+    }
+
+    int numRows() {
+        if(mSparse != null) return mSparse.numRows;
+        return mMatrix != null ? mMatrix.numRows : 0;
+    }
+
+    int numCols() {
+        if(mSparse != null) return mSparse.numCols;
+        return mMatrix != null ? mMatrix.numCols : 0;
+    }
+
+    double getScalar() throws SyntaxException {
+        if(isMatrix()) throw new SyntaxException();
+        return mScalar;
+    }
+
+    /**
+     * Returns the matrix in dense form. Sparse matrices are expanded the first time this is called.
+     * */
+    DenseMatrix64F getMatrix() throws SyntaxException {
+        if(!isMatrix()) throw new SyntaxException();
+        if(mMatrix == null) mMatrix = mSparse.toDense();
+        return mMatrix;
+    }
+
+    SparseMatrix getSparse() throws SyntaxException {
+        if(!isSparse()) throw new SyntaxException();
+        return mSparse;
+    }
+}
@@ -0,0 +1,108 @@
+package com.xlythe.math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits large jobs across a fixed pool of daemon threads, shared by everything in the math engine.
+ * ForkJoinPool would be the obvious fit, but Android only has it from API 21.
+ */
+final class Parallel {
+    static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+    // Created on first use
+    private static ExecutorService sExecutor;
+
+    // Set on the pool's own threads. Work they hand to the pool runs inline instead, or a full
+    // pool could end up waiting on tasks that have no thread left to run them.
+    private static final ThreadLocal<Boolean> sIsWorker = new ThreadLocal<Boolean>();
+
+    /**
+     * A slice of a larger job, from start (inclusive) to end (exclusive)
+     * */
+    interface Range {
+        void run(int start, int end);
+    }
+
+    private Parallel() {}
+
+    /**
+     * Runs [0, length) in up to THREAD_COUNT slices of at least minSlice each, and waits for all
+     * of them. The calling thread takes the last slice itself.
+     * */
+    static void forRange(int length, int minSlice, final Range range) {
+        int slices = Math.min(THREAD_COUNT, length / Math.max(1, minSlice));
+        if(slices <= 1 || sIsWorker.get() != null) {
+            range.run(0, length);
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<Future<?>>(slices - 1);
+        for(int i = 0; i < slices - 1; i++) {
+            final int start = (int) ((long) length * i / slices);
+            final int end = (int) ((long) length * (i + 1) / slices);
+            futures.add(getExecutor().submit(new Runnable() {
+                @Override
+                public void run() {
+                    range.run(start, end);
+                }
+            }));
+        }
+        try {
+            range.run((int) ((long) length * (slices - 1) / slices), length);
+        } finally {
+            for(Future<?> future : futures) {
+                await(future);
+            }
+        }
+    }
+
+    static void await(Future<?> future) {
+        boolean interrupted = false;
+        try {
+            while(true) {
+                try {
+                    future.get();
+                    return;
+                } catch(InterruptedException e) {
+                    interrupted = true;
+                } catch(ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if(cause instanceof Error) throw (Error) cause;
+                    throw new RuntimeException(cause);
+                }
+            }
+        } finally {
+            if(interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    static synchronized ExecutorService getExecutor() {
+        if(sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            sIsWorker.set(Boolean.TRUE);
+                            runnable.run();
+                        }
+                    }, "Solver #" + mCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+}
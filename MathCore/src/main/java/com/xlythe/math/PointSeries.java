@@ -0,0 +1,98 @@
+package com.xlythe.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The points of a graph, packed as x0, y0, x1, y1, ... in a single float[]. Unlike a List<Point>,
+ * adding a point doesn't allocate, so sampling and drawing a graph while panning creates almost
+ * no garbage.
+ *
+ * A break (where the pen should lift, eg. at an asymptote) is stored as a point at NaN, NaN.
+ */
+public final class PointSeries {
+    private float[] mData;
+    private int mSize;
+
+    public PointSeries() {
+        this(64);
+    }
+
+    public PointSeries(int capacity) {
+        mData = new float[Math.max(capacity, 1) * 2];
+    }
+
+    public void add(float x, float y) {
+        if(mSize * 2 == mData.length) {
+            mData = Arrays.copyOf(mData, mData.length * 2);
+        }
+        mData[mSize * 2] = x;
+        mData[mSize * 2 + 1] = y;
+        mSize++;
+    }
+
+    /**
+     * Ends the current segment. Lines aren't drawn across a break.
+     * */
+    public void addBreak() {
+        // Two breaks in a row mean the same as one
+        if(mSize > 0 && !isBreak(mSize - 1)) {
+            add(Float.NaN, Float.NaN);
+        }
+    }
+
+    public void addAll(PointSeries other) {
+        if((mSize + other.mSize) * 2 > mData.length) {
+            mData = Arrays.copyOf(mData, Math.max(mData.length * 2, (mSize + other.mSize) * 2));
+        }
+        System.arraycopy(other.mData, 0, mData, mSize * 2, other.mSize * 2);
+        mSize += other.mSize;
+    }
+
+    /**
+     * The number of points, including breaks
+     * */
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public float getX(int index) {
+        return mData[index * 2];
+    }
+
+    public float getY(int index) {
+        return mData[index * 2 + 1];
+    }
+
+    public boolean isBreak(int index) {
+        return Float.isNaN(mData[index * 2]) && Float.isNaN(mData[index * 2 + 1]);
+    }
+
+    /**
+     * Returns the backing array, as x0, y0, x1, y1, ... Only the first size() * 2 values are used.
+     * This is not a copy, so don't modify it.
+     * */
+    public float[] getData() {
+        return mData;
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Returns the points as a list, for code that hasn't moved over to PointSeries yet
+     * */
+    public List<Point> toList() {
+        List<Point> points = new ArrayList<>(mSize);
+        for(int i = 0; i < mSize; i++) {
+            points.add(new Point(getX(i), getY(i)));
+        }
+        return points;
+    }
+}
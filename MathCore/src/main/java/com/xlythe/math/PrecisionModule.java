@@ -0,0 +1,616 @@
+package com.xlythe.math;
+
+import org.javia.arity.SyntaxException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Evaluates equations with BigDecimal instead of double, to as many digits as the MathContext asks for.
+ *
+ * Reads equations exactly the way arity does (operator precedence, implicit multiplication,
+ * auto-closed parenthesis, percentages) so both engines agree on what an equation means.
+ * Anything that doesn't have a real answer, or that we don't handle (variables, gamma, rnd),
+ * throws so the Solver can fall back to arity.
+ */
+public class PrecisionModule extends Module {
+    private static final String WHITESPACE = " \n\r\t";
+
+    // Token types
+    private static final int NUMBER = 1;
+    private static final int CONST = 2;
+    private static final int CALL = 3;
+    private static final int LEFT_PAREN = 4;
+    private static final int RIGHT_PAREN = 5;
+    private static final int COMMA = 6;
+    private static final int END = 7;
+    private static final int ADD = 8;
+    private static final int SUB = 9;
+    private static final int MUL = 10;
+    private static final int DIV = 11;
+    private static final int MOD = 12;
+    private static final int NEGATE = 13;
+    private static final int POWER = 14;
+    private static final int FACTORIAL = 15;
+    private static final int PERCENT = 16;
+    private static final int SQRT = 17;
+
+    // How operators group
+    private static final int LEFT = 0;
+    private static final int RIGHT = 1;
+    private static final int PREFIX = 2;
+    private static final int SUFFIX = 3;
+
+    // Same priorities as arity's Lexer
+    private static final Token TOKEN_ADD = new Token(ADD, 4, LEFT);
+    private static final Token TOKEN_SUB = new Token(SUB, 4, LEFT);
+    private static final Token TOKEN_MUL = new Token(MUL, 5, LEFT);
+    private static final Token TOKEN_DIV = new Token(DIV, 5, LEFT);
+    private static final Token TOKEN_MOD = new Token(MOD, 5, LEFT);
+    private static final Token TOKEN_NEGATE = new Token(NEGATE, 6, PREFIX);
+    private static final Token TOKEN_POWER = new Token(POWER, 7, RIGHT);
+    private static final Token TOKEN_FACTORIAL = new Token(FACTORIAL, 8, SUFFIX);
+    private static final Token TOKEN_PERCENT = new Token(PERCENT, 9, SUFFIX);
+    private static final Token TOKEN_SQRT = new Token(SQRT, 10, PREFIX);
+    private static final Token TOKEN_LEFT_PAREN = new Token(LEFT_PAREN, 1, LEFT);
+    private static final Token TOKEN_RIGHT_PAREN = new Token(RIGHT_PAREN, 3, LEFT);
+    private static final Token TOKEN_COMMA = new Token(COMMA, 2, LEFT);
+    private static final Token TOKEN_END = new Token(END, 0, LEFT);
+
+    private static final BigDecimal ONE_HUNDRED = BigDecimal.valueOf(100);
+    private static final BigDecimal ONE_EIGHTY = BigDecimal.valueOf(180);
+
+    PrecisionModule(Solver solver) {
+        super(solver);
+    }
+
+    /**
+     * Evaluates a (decimal) equation, rounded to the MathContext
+     * */
+    public BigDecimal evaluate(String input, MathContext mathContext) throws SyntaxException {
+        return new Evaluation(input, mathContext).run();
+    }
+
+    private static class Token {
+        final int type;
+        final int priority;
+        final int associativity;
+        final String name;
+        final BigDecimal value;
+        int arity = 1;
+
+        Token(int type, int priority, int associativity) {
+            this(type, priority, associativity, null, null);
+        }
+
+        Token(int type, int priority, int associativity, String name, BigDecimal value) {
+            this.type = type;
+            this.priority = priority;
+            this.associativity = associativity;
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    /**
+     * The state for a single equation. Reads tokens, orders them with the shunting-yard
+     * algorithm (as arity's RPN class does) and evaluates them as they come out.
+     * */
+    private static class Evaluation {
+        private final String mInput;
+        private final MathContext mMathContext;
+        private final MathContext mWorkingContext;
+        private final Deque<Token> mOperators = new ArrayDeque<>();
+        private final Deque<BigDecimal> mOperands = new ArrayDeque<>();
+        private int mPosition;
+        private int mPreviousType;
+
+        // True if the last token evaluated was a %. Then 50+10% means 50+(10% of 50).
+        private boolean mPercent;
+
+        Evaluation(String input, MathContext mathContext) {
+            mInput = input;
+            mMathContext = mathContext;
+            mWorkingContext = new MathContext(mathContext.getPrecision() + 5, mathContext.getRoundingMode());
+        }
+
+        BigDecimal run() throws SyntaxException {
+            Token token;
+            do {
+                token = nextToken();
+                push(token);
+            } while(token != TOKEN_END);
+
+            if(mOperands.size() != 1) {
+                throw new SyntaxException();
+            }
+            return mOperands.pop().round(mMathContext);
+        }
+
+        private Token nextToken() throws SyntaxException {
+            final int length = mInput.length();
+            while(mPosition < length && WHITESPACE.indexOf(mInput.charAt(mPosition)) != -1) {
+                mPosition++;
+            }
+            if(mPosition >= length) {
+                return TOKEN_END;
+            }
+
+            final int start = mPosition;
+            char c = mInput.charAt(mPosition++);
+            switch(c) {
+                case '!':
+                    return TOKEN_FACTORIAL;
+                case '%':
+                    return TOKEN_PERCENT;
+                case '#':
+                    return TOKEN_MOD;
+                case '(':
+                    return TOKEN_LEFT_PAREN;
+                case ')':
+                    return TOKEN_RIGHT_PAREN;
+                case '*':
+                case Constants.MUL:
+                    return TOKEN_MUL;
+                case '+':
+                    return TOKEN_ADD;
+                case ',':
+                    return TOKEN_COMMA;
+                case '-':
+                case Constants.MINUS:
+                    return TOKEN_SUB;
+                case '/':
+                case Constants.DIV:
+                    return TOKEN_DIV;
+                case Constants.POWER:
+                    return TOKEN_POWER;
+                case '\u221a':// sqrt
+                    return TOKEN_SQRT;
+            }
+
+            if(isDigit(c) || c == '.') {
+                return new Token(NUMBER, 20, LEFT, null, readNumber(start));
+            }
+
+            if(isLetter(c)) {
+                while(mPosition < length && (isLetter(mInput.charAt(mPosition)) || isDigit(mInput.charAt(mPosition)))) {
+                    mPosition++;
+                }
+                String name = mInput.substring(start, mPosition);
+
+                // Derivatives (eg. f'(x)) aren't supported
+                if(mPosition < length && mInput.charAt(mPosition) == '\'') {
+                    throw new SyntaxException();
+                }
+
+                int end = mPosition;
+                while(end < length && WHITESPACE.indexOf(mInput.charAt(end)) != -1) {
+                    end++;
+                }
+                if(end < length && mInput.charAt(end) == Constants.LEFT_PAREN) {
+                    mPosition = end + 1;
+                    return new Token(CALL, 0, LEFT, name, null);
+                }
+                return new Token(CONST, 20, LEFT, name, null);
+            }
+
+            // Greek letters (eg. pi) and infinity
+            if((c >= '\u0391' && c <= '\u03a9') || (c >= '\u03b1' && c <= '\u03c9') || c == '\u221e') {
+                return new Token(CONST, 20, LEFT, String.valueOf(c), null);
+            }
+
+            throw new SyntaxException();
+        }
+
+        private BigDecimal readNumber(int start) throws SyntaxException {
+            final int length = mInput.length();
+
+            // 0x1F, 0b101 and 0o17
+            if(mInput.charAt(start) == '0' && mPosition < length) {
+                char prefix = Character.toLowerCase(mInput.charAt(mPosition));
+                int radix = prefix == 'x' ? 16 : prefix == 'b' ? 2 : prefix == 'o' ? 8 : 0;
+                if(radix > 0) {
+                    mPosition++;
+                    int digits = mPosition;
+                    while(mPosition < length && (isLetter(mInput.charAt(mPosition)) || isDigit(mInput.charAt(mPosition)))) {
+                        mPosition++;
+                    }
+                    try {
+                        return BigDecimal.valueOf(Integer.parseInt(mInput.substring(digits, mPosition), radix));
+                    } catch(NumberFormatException e) {
+                        throw new SyntaxException();
+                    }
+                }
+            }
+
+            while(mPosition < length && (isDigit(mInput.charAt(mPosition)) || mInput.charAt(mPosition) == '.')) {
+                mPosition++;
+            }
+            if(mPosition < length && (mInput.charAt(mPosition) == 'E' || mInput.charAt(mPosition) == 'e')) {
+                mPosition++;
+                if(mPosition < length && (mInput.charAt(mPosition) == '-' || mInput.charAt(mPosition) == Constants.MINUS)) {
+                    mPosition++;
+                }
+                while(mPosition < length && isDigit(mInput.charAt(mPosition))) {
+                    mPosition++;
+                }
+            }
+
+            String number = mInput.substring(start, mPosition).replace(Constants.MINUS, '-');
+            if(number.equals(".")) {
+                return BigDecimal.ZERO;
+            }
+            try {
+                return new BigDecimal(number);
+            } catch(NumberFormatException e) {
+                throw new SyntaxException();
+            }
+        }
+
+        /**
+         * Orders the token, the same way as arity's RPN.push()
+         * */
+        private void push(Token token) throws SyntaxException {
+            switch(token.type) {
+                case NUMBER:
+                case CONST:
+                    if(isOperand(mPreviousType)) {
+                        push(TOKEN_MUL);
+                    }
+                    evaluate(token);
+                    break;
+
+                case CALL:
+                case LEFT_PAREN:
+                    if(isOperand(mPreviousType)) {
+                        push(TOKEN_MUL);
+                    }
+                    mOperators.push(token);
+                    break;
+
+                case RIGHT_PAREN: {
+                    if(mPreviousType == CALL) {
+                        mOperators.peek().arity--;
+                    } else if(!isOperand(mPreviousType)) {
+                        throw new SyntaxException();
+                    }
+
+                    popHigher(token.priority);
+                    Token top = mOperators.peek();
+                    if(top != null) {
+                        if(top.type == CALL) {
+                            evaluate(top);
+                        } else if(top.type != LEFT_PAREN) {
+                            throw new SyntaxException();
+                        }
+                        mOperators.pop();
+                    }
+                    break;
+                }
+
+                case COMMA: {
+                    if(!isOperand(mPreviousType)) {
+                        throw new SyntaxException();
+                    }
+                    popHigher(token.priority);
+                    Token top = mOperators.peek();
+                    if(top == null || top.type != CALL) {
+                        throw new SyntaxException();
+                    }
+                    top.arity++;
+                    break;
+                }
+
+                case END:
+                    // Close any open parenthesis
+                    do {
+                        push(TOKEN_RIGHT_PAREN);
+                    } while(!mOperators.isEmpty());
+                    break;
+
+                default:
+                    if(token.associativity == PREFIX) {
+                        if(isOperand(mPreviousType)) {
+                            push(TOKEN_MUL);
+                        }
+                        mOperators.push(token);
+                        break;
+                    }
+                    if(!isOperand(mPreviousType)) {
+                        if(token.type == SUB) {
+                            token = TOKEN_NEGATE;
+                            mOperators.push(token);
+                            break;
+                        } else if(token.type == ADD) {
+                            // Unary plus is ignored
+                            return;
+                        }
+                        throw new SyntaxException();
+                    }
+                    popHigher(token.priority + (token.associativity == RIGHT ? 1 : 0));
+                    mOperators.push(token);
+            }
+            mPreviousType = token.type;
+        }
+
+        private void popHigher(int priority) throws SyntaxException {
+            Token top = mOperators.peek();
+            while(top != null && top.priority >= priority) {
+                evaluate(mOperators.pop());
+                top = mOperators.peek();
+            }
+        }
+
+        private static boolean isOperand(int type) {
+            return type == FACTORIAL
+                    || type == RIGHT_PAREN
+                    || type == NUMBER
+                    || type == CONST
+                    || type == PERCENT;
+        }
+
+        /**
+         * Applies the token (in reverse polish order) to the operand stack
+         * */
+        private void evaluate(Token token) throws SyntaxException {
+            boolean percent = mPercent;
+            mPercent = token.type == PERCENT;
+
+            MathContext mc = mWorkingContext;
+            BigDecimal a, b;
+            switch(token.type) {
+                case NUMBER:
+                    mOperands.push(token.value);
+                    break;
+                case CONST:
+                    mOperands.push(constant(token.name));
+                    break;
+                case CALL:
+                    call(token.name, token.arity);
+                    break;
+                case ADD:
+                    b = pop();
+                    a = pop();
+                    mOperands.push(a.add(percent ? a.multiply(b, mc) : b, mc));
+                    break;
+                case SUB:
+                    b = pop();
+                    a = pop();
+                    mOperands.push(a.subtract(percent ? a.multiply(b, mc) : b, mc));
+                    break;
+                case MUL:
+                    b = pop();
+                    a = pop();
+                    mOperands.push(a.multiply(b, mc));
+                    break;
+                case DIV:
+                    b = pop();
+                    a = pop();
+                    mOperands.push(a.divide(b, mc));
+                    break;
+                case MOD:
+                    b = pop();
+                    a = pop();
+                    mOperands.push(a.remainder(b, mc));
+                    break;
+                case NEGATE:
+                    mOperands.push(pop().negate());
+                    break;
+                case POWER:
+                    b = pop();
+                    a = pop();
+                    mOperands.push(BigDecimalMath.pow(a, b, mc));
+                    break;
+                case FACTORIAL:
+                    mOperands.push(BigDecimalMath.factorial(pop(), mc));
+                    break;
+                case PERCENT:
+                    mOperands.push(pop().divide(ONE_HUNDRED, mc));
+                    break;
+                case SQRT:
+                    mOperands.push(BigDecimalMath.sqrt(pop(), mc));
+                    break;
+                default:
+                    throw new SyntaxException();
+            }
+        }
+
+        private BigDecimal pop() throws SyntaxException {
+            if(mOperands.isEmpty()) {
+                throw new SyntaxException();
+            }
+            return mOperands.pop();
+        }
+
+        private BigDecimal constant(String name) throws SyntaxException {
+            switch(name) {
+                case "pi":
+                case "\u03c0":
+                    return BigDecimalMath.pi(mWorkingContext);
+                case "e":
+                    return BigDecimalMath.e(mWorkingContext);
+                case "deg":
+                    return degrees();
+                case "indeg":
+                    return BigDecimal.ONE.divide(degrees(), mWorkingContext);
+                default:
+                    // Infinity, NaN, i and anything user defined
+                    throw new SyntaxException();
+            }
+        }
+
+        private void call(String name, int arity) throws SyntaxException {
+            MathContext mc = mWorkingContext;
+            if(arity == 2) {
+                BigDecimal b = pop();
+                BigDecimal a = pop();
+                mOperands.push(call(name, a, b, mc));
+            } else if(arity == 1) {
+                mOperands.push(call(name, pop(), mc));
+            } else {
+                // rnd() and friends
+                throw new SyntaxException();
+            }
+        }
+
+        private BigDecimal call(String name, BigDecimal x, MathContext mc) throws SyntaxException {
+            switch(name) {
+                case "sqrt":
+                    return BigDecimalMath.sqrt(x, mc);
+                case "cbrt":
+                    return BigDecimalMath.cbrt(x, mc);
+                case "sin":
+                    return BigDecimalMath.sin(x, mc);
+                case "cos":
+                    return BigDecimalMath.cos(x, mc);
+                case "tan":
+                case "tg":
+                    return BigDecimalMath.tan(x, mc);
+                case "asin":
+                    return BigDecimalMath.asin(x, mc);
+                case "acos":
+                    return BigDecimalMath.acos(x, mc);
+                case "atan":
+                    return BigDecimalMath.atan(x, mc);
+                case "sinh":
+                    return BigDecimalMath.sinh(x, mc);
+                case "cosh":
+                    return BigDecimalMath.cosh(x, mc);
+                case "tanh":
+                    return BigDecimalMath.tanh(x, mc);
+                case "asinh":
+                    return BigDecimalMath.asinh(x, mc);
+                case "acosh":
+                    return BigDecimalMath.acosh(x, mc);
+                case "atanh":
+                    return BigDecimalMath.atanh(x, mc);
+                case "exp":
+                    return BigDecimalMath.exp(x, mc);
+                case "ln":
+                    return BigDecimalMath.ln(x, mc);
+                case "log":
+                case "log10":
+                case "lg":
+                    return BigDecimalMath.log10(x, mc);
+                case "log2":
+                case "lb":
+                    return BigDecimalMath.log2(x, mc);
+                case "abs":
+                    return x.abs();
+                case "floor":
+                    return x.setScale(0, RoundingMode.FLOOR);
+                case "ceil":
+                    return x.setScale(0, RoundingMode.CEILING);
+                case "sign":
+                    return BigDecimal.valueOf(x.signum());
+                case "gamma":
+                    return BigDecimalMath.factorial(x.subtract(BigDecimal.ONE), mc);
+                case "real":
+                case "re":
+                    return x;
+                case "imag":
+                case "im":
+                    return BigDecimal.ZERO;
+                case "sind":
+                    return BigDecimalMath.sin(x.multiply(degrees()), mc);
+                case "cosd":
+                    return BigDecimalMath.cos(x.multiply(degrees()), mc);
+                case "tand":
+                case "tgd":
+                    return BigDecimalMath.tan(x.multiply(degrees()), mc);
+                case "asind":
+                    return BigDecimalMath.asin(x, mc).divide(degrees(), mc);
+                case "acosd":
+                    return BigDecimalMath.acos(x, mc).divide(degrees(), mc);
+                case "atand":
+                    return BigDecimalMath.atan(x, mc).divide(degrees(), mc);
+                default:
+                    throw new SyntaxException();
+            }
+        }
+
+        private BigDecimal call(String name, BigDecimal a, BigDecimal b, MathContext mc) throws SyntaxException {
+            switch(name) {
+                case "min":
+                    return a.min(b);
+                case "max":
+                    return a.max(b);
+                case "mod":
+                    return a.remainder(b, mc);
+                case "log":
+                    // log(base, x)
+                    return BigDecimalMath.ln(b, mc).divide(BigDecimalMath.ln(a, mc), mc);
+                case "gcd":
+                    return gcd(a, b);
+                case "comb":
+                    return combinations(a, b, false);
+                case "perm":
+                    return combinations(a, b, true);
+                default:
+                    throw new SyntaxException();
+            }
+        }
+
+        private BigDecimal degrees() {
+            return BigDecimalMath.pi(mWorkingContext).divide(ONE_EIGHTY, mWorkingContext);
+        }
+
+        private static BigDecimal gcd(BigDecimal a, BigDecimal b) {
+            a = a.abs();
+            b = b.abs();
+            if(BigDecimalMath.isInteger(a) && BigDecimalMath.isInteger(b)) {
+                return new BigDecimal(a.toBigInteger().gcd(b.toBigInteger()));
+            }
+
+            // Euclid's algorithm works for (terminating) decimals too
+            for(int i = 0; i < 1000 && b.signum() != 0; i++) {
+                BigDecimal remainder = a.remainder(b);
+                a = b;
+                b = remainder;
+            }
+            if(b.signum() != 0) {
+                throw new ArithmeticException("No common divisor");
+            }
+            return a;
+        }
+
+        /**
+         * n choose k, or (if ordered) n permute k
+         * */
+        private static BigDecimal combinations(BigDecimal n, BigDecimal k, boolean ordered) {
+            if(!BigDecimalMath.isInteger(n) || !BigDecimalMath.isInteger(k) || n.signum() < 0 || k.signum() < 0) {
+                // Arity uses the gamma function here
+                throw new ArithmeticException("Not a natural number");
+            }
+            if(k.compareTo(n) > 0) {
+                return BigDecimal.ZERO;
+            }
+            if(k.compareTo(BigDecimal.valueOf(100000)) > 0) {
+                throw new ArithmeticException("Overflow");
+            }
+
+            BigInteger top = n.toBigInteger();
+            int count = k.intValue();
+            BigInteger result = BigInteger.ONE;
+            for(int i = 0; i < count; i++) {
+                result = result.multiply(top.subtract(BigInteger.valueOf(i)));
+                if(!ordered) {
+                    result = result.divide(BigInteger.valueOf(i + 1));
+                }
+            }
+            return new BigDecimal(result);
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static boolean isLetter(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+    }
+}
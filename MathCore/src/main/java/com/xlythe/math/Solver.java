@@ -0,0 +1,561 @@
+package com.xlythe.math;
+
+import org.javia.arity.Complex;
+import org.javia.arity.Function;
+import org.javia.arity.Symbols;
+import org.javia.arity.SyntaxException;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Solves math problems
+ *
+ * Supports:
+ * Basic math + functions (trig, pi)
+ * Matrices
+ * Hex and Bin conversion
+ * Arbitrary precision (see setMathContext())
+ *
+ * Variables (see define()) are scoped to the calling thread, so graphing and
+ * interactive evaluation can share a Solver without seeing each other's values.
+ */
+public class Solver {
+    private static final int MAX_CACHE_SIZE = 100;
+
+    // Used for solving basic math. Each thread gets its own symbol table, so a graph being
+    // drawn in the background can define X and Y without touching anyone else's.
+    private final ThreadLocal<SymbolTable> mSymbolTable = new ThreadLocal<SymbolTable>() {
+        @Override
+        protected SymbolTable initialValue() {
+            return new SymbolTable();
+        }
+    };
+
+    // Formats results without creating garbage on every keystroke. Holds scratch buffers,
+    // so it gets the same per thread treatment as the symbol table.
+    private final ThreadLocal<DoubleFormatter> mFormatter = new ThreadLocal<DoubleFormatter>() {
+        @Override
+        protected DoubleFormatter initialValue() {
+            return new DoubleFormatter();
+        }
+    };
+
+    // Recently evaluated equations, keyed by their decimal input. The decimal input already
+    // carries the base (numbers have been converted) and angle mode (sin becomes sind).
+    private final Map<String, Complex> mCache = new LinkedHashMap<String, Complex>(MAX_CACHE_SIZE, 1f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Complex> eldest) {
+            return size() > MAX_CACHE_SIZE;
+        }
+    };
+    private int mCacheHits;
+    private int mCacheMisses;
+    private BaseModule mBaseModule;
+    private MatrixModule mMatrixModule;
+    private PrecisionModule mPrecisionModule;
+    private int mLineLength = 8;
+
+    // When set, equations are evaluated with BigDecimals to this precision instead of with doubles
+    private volatile MathContext mMathContext;
+    private Localizer mLocalizer;
+
+    public Solver() {
+        mBaseModule = new BaseModule(this);
+        mMatrixModule = new MatrixModule(this);
+        mPrecisionModule = new PrecisionModule(this);
+    }
+
+    /**
+     * Input an equation as a string
+     * ex: sin(150)
+     * and get the result returned.
+     * */
+    public String solve(String input) throws SyntaxException {
+        if(displayContainsMatrices(input)) {
+            return mMatrixModule.evaluateMatrices(input);
+        }
+
+        if(input.trim().isEmpty()) {
+            return "";
+        }
+
+        return solveDecimal(normalize(input), mBaseModule.getBase(), mLocalizer);
+    }
+
+    /**
+     * Solves an equation that normalize() has already been run on, formatting the answer
+     * in the given base and locale.
+     * */
+    private String solveDecimal(String decimalInput, Base base, Localizer localizer) throws SyntaxException {
+        MathContext mathContext = mMathContext;
+        if(mathContext != null && mSymbolTable.get().isStock()) {
+            try {
+                return format(mPrecisionModule.evaluate(decimalInput, mathContext), base, localizer);
+            } catch(SyntaxException | ArithmeticException e) {
+                // Complex numbers, infinities, variables and the like. Doubles will do.
+            }
+        }
+
+        return format(evaluate(decimalInput), base, localizer);
+    }
+
+    /**
+     * Solves a batch of equations (eg. the history, after the base changes) in parallel.
+     * Returns one Result per input, in the same order. Equations that are the same once
+     * normalized (eg. 1+2 and 1+2+) are only solved once.
+     *
+     * Everything but matrices is normalized and formatted with the base and localizer as they
+     * were when solveAll() was called. If the calling thread has defined variables, the batch
+     * is solved on the calling thread so those variables are still visible.
+     * */
+    public List<Result> solveAll(List<String> inputs) {
+        final Base base = mBaseModule.getBase();
+        final Localizer localizer = mLocalizer;
+
+        // Normalize everything up front, on this thread, keeping one job per distinct equation.
+        // Matrices don't normalize, so they're solved (and deduplicated) as typed.
+        Result[] output = new Result[inputs.size()];
+        int[] jobOf = new int[inputs.size()];
+        Map<String, Integer> decimalJobs = new HashMap<String, Integer>();
+        Map<String, Integer> matrixJobs = new HashMap<String, Integer>();
+        final List<String> jobs = new ArrayList<String>();
+        final List<Boolean> isMatrix = new ArrayList<Boolean>();
+        for(int i = 0; i < output.length; i++) {
+            String input = inputs.get(i);
+            jobOf[i] = -1;
+            boolean matrix = displayContainsMatrices(input);
+            if(!matrix && input.trim().isEmpty()) {
+                output[i] = new Result("", null);
+                continue;
+            }
+
+            String key = input;
+            if(!matrix) {
+                try {
+                    key = normalize(input, base, localizer);
+                } catch(SyntaxException e) {
+                    output[i] = new Result(null, e);
+                    continue;
+                }
+            }
+
+            Map<String, Integer> known = matrix ? matrixJobs : decimalJobs;
+            Integer job = known.get(key);
+            if(job == null) {
+                job = jobs.size();
+                known.put(key, job);
+                jobs.add(key);
+                isMatrix.add(matrix);
+            }
+            jobOf[i] = job;
+        }
+
+        final Result[] solved = new Result[jobs.size()];
+        if(!mSymbolTable.get().isStock()) {
+            solveRange(jobs, isMatrix, base, localizer, solved, 0, solved.length);
+        } else {
+            // A few large slices rather than one task per equation, which would cost more to schedule than to solve
+            Parallel.forRange(solved.length, 1, new Parallel.Range() {
+                @Override
+                public void run(int start, int end) {
+                    solveRange(jobs, isMatrix, base, localizer, solved, start, end);
+                }
+            });
+        }
+
+        for(int i = 0; i < output.length; i++) {
+            if(jobOf[i] != -1) output[i] = solved[jobOf[i]];
+        }
+        return new ArrayList<Result>(Arrays.asList(output));
+    }
+
+    /**
+     * Equivalent to solveAll(Arrays.asList(inputs))
+     * */
+    public List<Result> solveAll(String... inputs) {
+        return solveAll(Arrays.asList(inputs));
+    }
+
+    private void solveRange(List<String> jobs, List<Boolean> isMatrix, Base base, Localizer localizer,
+                            Result[] results, int start, int end) {
+        for(int i = start; i < end; i++) {
+            try {
+                String text = isMatrix.get(i)
+                        ? mMatrixModule.evaluateMatrices(jobs.get(i))
+                        : solveDecimal(jobs.get(i), base, localizer);
+                results[i] = new Result(text, null);
+            } catch(SyntaxException e) {
+                results[i] = new Result(null, e);
+            }
+        }
+    }
+
+    /**
+     * Localizes the input, drops any trailing operators and converts it to decimal.
+     * The result is ready to be passed to evaluate().
+     * */
+    String normalize(String input) throws SyntaxException {
+        return normalize(input, mBaseModule.getBase(), mLocalizer);
+    }
+
+    private String normalize(String input, Base base, Localizer localizer) throws SyntaxException {
+        if(localizer != null) input = localizer.localize(input);
+
+        // Drop final operators (they can only result in error)
+        int size = input.length();
+        while(size > 0 && isOperator(input.charAt(size - 1))) {
+            input = input.substring(0, size - 1);
+            --size;
+        }
+
+        // Convert to decimal
+        return mBaseModule.changeBase(input, base, Base.DECIMAL);
+    }
+
+    /**
+     * Formats a value (in the current base and locale) the same way solve() does.
+     * */
+    String format(Complex value) throws SyntaxException {
+        return format(value, mBaseModule.getBase(), mLocalizer);
+    }
+
+    private String format(Complex value, Base base, Localizer localizer) throws SyntaxException {
+        DoubleFormatter formatter = mFormatter.get();
+        String real = formatter.format(value.re, mLineLength);
+        String imaginary = formatter.format(value.im, mLineLength);
+
+        real = clean(mBaseModule.changeBase(real, Base.DECIMAL, base));
+        imaginary = clean(mBaseModule.changeBase(imaginary, Base.DECIMAL, base));
+
+        String result = "";
+        if(value.re != 0 && value.im == 1) result = real + "+" + "i";
+        else if(value.re != 0 && value.im > 0) result = real + "+" + imaginary + "i";
+        else if(value.re != 0 && value.im == -1) result = real + "-" + "i";
+        else if(value.re != 0 && value.im < 0) result = real + imaginary + "i"; // Implicit -
+        else if(value.re != 0 && value.im == 0) result = real;
+        else if(value.re == 0 && value.im == 1) result = "i";
+        else if(value.re == 0 && value.im == -1) result = "-i";
+        else if(value.re == 0 && value.im != 0) result = imaginary + "i";
+        else if(value.re == 0 && value.im == 0) result = "0";
+
+        if(localizer != null) result = localizer.relocalize(result);
+
+        return result;
+    }
+
+    /**
+     * Formats a precise value in the given base and locale, the same way solve() does.
+     * */
+    private String format(BigDecimal value, Base base, Localizer localizer) throws SyntaxException {
+        String result;
+        if(value.signum() == 0) {
+            result = "0";
+        } else {
+            result = mFormatter.get().format(value, mLineLength);
+            result = clean(mBaseModule.changeBase(result, Base.DECIMAL, base));
+        }
+
+        if(localizer != null) result = localizer.relocalize(result);
+
+        return result;
+    }
+
+    /**
+     * Evaluates an equation that has already been localized and converted to decimal.
+     * Repeated input (eg. the live preview while typing) is answered from the cache.
+     *
+     * The returned value may be shared, so don't modify it.
+     * */
+    Complex evaluate(String decimalInput) throws SyntaxException {
+        Complex value = getCachedResult(decimalInput);
+        if(value == null) {
+            value = evaluateUncached(decimalInput);
+            cacheResult(decimalInput, value);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the cached answer to the decimal input, or null (counted as a miss) if there isn't one.
+     *
+     * The returned value may be shared, so don't modify it.
+     * */
+    Complex getCachedResult(String decimalInput) {
+        if(!mSymbolTable.get().isStock()) {
+            return null;
+        }
+        synchronized(mCache) {
+            Complex value = mCache.get(decimalInput);
+            if(value != null) {
+                mCacheHits++;
+            } else {
+                mCacheMisses++;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Remembers the answer to the decimal input, as long as it doesn't depend on any user defined symbols.
+     * */
+    void cacheResult(String decimalInput, Complex value) {
+        if(!mSymbolTable.get().isStock()) {
+            return;
+        }
+        synchronized(mCache) {
+            mCache.put(decimalInput, value);
+        }
+    }
+
+    /**
+     * Evaluates decimal input without looking in, or adding to, the cache.
+     * */
+    Complex evaluateUncached(String decimalInput) throws SyntaxException {
+        // Symbols reuses the Complex it returns, so keep our own copy
+        return new Complex(mSymbolTable.get().symbols.evalComplex(decimalInput));
+    }
+
+    public double eval(String input) throws SyntaxException{
+        return mSymbolTable.get().symbols.eval(input);
+    }
+
+    /**
+     * Pushes a frame onto the calling thread's symbol table.
+     * */
+    public void pushFrame() {
+        mSymbolTable.get().pushFrame();
+    }
+
+    /**
+     * Pops a frame off of the calling thread's symbol table.
+     * */
+    public void popFrame() {
+        mSymbolTable.get().popFrame();
+    }
+
+    /**
+     * Compiles a decimal equation in the given variables (eg. X^2+Y, in X and Y) into a Function,
+     * so it can be evaluated over and over without being parsed again. Arguments are passed to
+     * the Function in the same order as the variables.
+     * */
+    public Function compile(String equation, String... variables) throws SyntaxException {
+        StringBuilder definition = new StringBuilder("f(");
+        for(int i = 0; i < variables.length; i++) {
+            if(i > 0) definition.append(',');
+            definition.append(variables[i]);
+        }
+        definition.append(")=").append(equation);
+        return mSymbolTable.get().symbols.compileWithName(definition.toString()).function;
+    }
+
+    /**
+     * Defines a variable in the calling thread's symbol table. Other threads won't see it.
+     * */
+    public void define(String var, double val) {
+        mSymbolTable.get().define(var, val);
+    }
+
+    /**
+     * The number of times solve() was answered from the cache
+     * */
+    public int getCacheHitCount() {
+        synchronized(mCache) {
+            return mCacheHits;
+        }
+    }
+
+    /**
+     * The number of times solve() had to parse the equation
+     * */
+    public int getCacheMissCount() {
+        synchronized(mCache) {
+            return mCacheMisses;
+        }
+    }
+
+    public void clearCache() {
+        synchronized(mCache) {
+            mCache.clear();
+            mCacheHits = 0;
+            mCacheMisses = 0;
+        }
+    }
+
+    public static boolean equal(String a, String b) {
+        return clean(a).equals(clean(b));
+    }
+
+    public static String clean(String equation) {
+        return equation
+                .replace('-', Constants.MINUS)
+                .replace('/', Constants.DIV)
+                .replace('*', Constants.MUL)
+                .replace(Constants.INFINITY, Constants.INFINITY_UNICODE);
+    }
+
+    public static boolean isOperator(char c) {
+        return ("" +
+                Constants.PLUS +
+                Constants.MINUS +
+                Constants.DIV +
+                Constants.MUL +
+                Constants.POWER).indexOf(c) != -1;
+    }
+
+    public static boolean isOperator(String c) {
+        return isOperator(c.charAt(0));
+    }
+
+    public static boolean isNegative(String number) {
+        return number.startsWith(String.valueOf(Constants.MINUS)) || number.startsWith("-");
+    }
+
+    public static boolean isDigit(char number) {
+        return String.valueOf(number).matches(Constants.REGEX_NUMBER);
+    }
+
+    boolean displayContainsMatrices(String text) {
+        return getMatrixModule().isMatrix(text);
+    }
+
+    public String convertToDecimal(String input) throws SyntaxException{
+        return mBaseModule.changeBase(input, mBaseModule.getBase(), Base.DECIMAL);
+    }
+
+    String tryFormattingWithPrecision(double value, int precision) throws SyntaxException {
+        return mFormatter.get().format(value, mLineLength, precision);
+    }
+
+    /**
+     * Translates equations from (and results back to) the user's locale. Pass null for English.
+     * */
+    public void setLocalizer(Localizer localizer) {
+        mLocalizer = localizer;
+    }
+
+    public void setLineLength(int length) {
+        mLineLength = length;
+    }
+
+    /**
+     * Evaluates equations with BigDecimals, to the given precision, instead of doubles.
+     * Pass null to go back to doubles (the default, and much faster).
+     *
+     * Results are still trimmed to the line length, so raise it to see the extra digits.
+     * Equations without a real answer (eg. sqrt(-1)) fall back to doubles.
+     * */
+    public void setMathContext(MathContext mathContext) {
+        if(mathContext != null && mathContext.getPrecision() == 0) {
+            throw new IllegalArgumentException("Unlimited precision can't represent irrational numbers");
+        }
+        mMathContext = mathContext;
+    }
+
+    public MathContext getMathContext() {
+        return mMathContext;
+    }
+
+    public PrecisionModule getPrecisionModule() {
+        return mPrecisionModule;
+    }
+
+    public void setBase(Base base) {
+        mBaseModule.setBase(base);
+    }
+
+    public Base getBase() {
+        return mBaseModule.getBase();
+    }
+
+    public BaseModule getBaseModule() {
+        return mBaseModule;
+    }
+
+    public MatrixModule getMatrixModule() {
+        return mMatrixModule;
+    }
+
+    /**
+     * Returns the calling thread's symbol table. Anything could be defined on it from here on,
+     * so that thread's results are no longer cached.
+     * */
+    public Symbols getSymbols() {
+        SymbolTable table = mSymbolTable.get();
+        table.markModified();
+        return table.symbols;
+    }
+
+    /**
+     * The answer to one of the equations passed to solveAll(), or the reason there isn't one.
+     * */
+    public static class Result {
+        private final String mText;
+        private final SyntaxException mError;
+
+        Result(String text, SyntaxException error) {
+            mText = text;
+            mError = error;
+        }
+
+        /**
+         * The same text solve() would have returned, or null if it would have thrown.
+         * */
+        public String getText() {
+            return mText;
+        }
+
+        /**
+         * The exception solve() would have thrown, or null if it succeeded.
+         * */
+        public SyntaxException getError() {
+            return mError;
+        }
+
+        public boolean isError() {
+            return mError != null;
+        }
+    }
+
+    /**
+     * A symbol table, along with enough bookkeeping to know if it's been modified.
+     * Cached values are only valid against the stock table.
+     * */
+    private static class SymbolTable {
+        final Symbols symbols = new Symbols();
+        private int mFrameDepth = 0;
+        private boolean mDefinedOutsideFrame = false;
+
+        void pushFrame() {
+            symbols.pushFrame();
+            mFrameDepth++;
+        }
+
+        void popFrame() {
+            symbols.popFrame();
+            mFrameDepth--;
+        }
+
+        void define(String var, double val) {
+            if(mFrameDepth == 0) mDefinedOutsideFrame = true;
+            symbols.define(var, val);
+        }
+
+        /**
+         * For changes made directly on the Symbols, which we can't see
+         * */
+        void markModified() {
+            mDefinedOutsideFrame = true;
+        }
+
+        boolean isStock() {
+            return mFrameDepth == 0 && !mDefinedOutsideFrame;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.xlythe.math;
+
+import org.ejml.UtilEjml;
+
+import java.util.Arrays;
+
+/**
+ * LU decomposition, with partial pivoting, of a square SparseMatrix. Rows are eliminated as
+ * sparse vectors, so banded and block diagonal matrices stay sparse throughout.
+ */
+final class SparseLU {
+    private final int mSize;
+
+    // The upper triangular factor. Row k starts with its pivot, in column k.
+    private final int[][] mColumns;
+    private final double[][] mValues;
+
+    // Which original row became row k of U
+    private final int[] mPivotRows;
+
+    // Every elimination step, in order, as (target row, pivot row, multiplier),
+    // so they can be replayed against a right hand side
+    private final int[] mTargets;
+    private final int[] mSources;
+    private final double[] mMultipliers;
+
+    private SparseLU(int size, int[][] columns, double[][] values, int[] pivotRows,
+                     int[] targets, int[] sources, double[] multipliers) {
+        mSize = size;
+        mColumns = columns;
+        mValues = values;
+        mPivotRows = pivotRows;
+        mTargets = targets;
+        mSources = sources;
+        mMultipliers = multipliers;
+    }
+
+    /**
+     * Returns the decomposition of the matrix, or null if it's singular (or too close to it)
+     * */
+    static SparseLU decompose(SparseMatrix matrix) {
+        if(matrix.numRows != matrix.numCols) return null;
+        int n = matrix.numRows;
+
+        // Copy the rows out, so they can grow independently as they fill in
+        int[][] columns = new int[n][];
+        double[][] values = new double[n][];
+        double max = 0;
+        for(int i = 0; i < n; i++) {
+            columns[i] = Arrays.copyOfRange(matrix.columns, matrix.rowStart[i], matrix.rowStart[i + 1]);
+            values[i] = Arrays.copyOfRange(matrix.values, matrix.rowStart[i], matrix.rowStart[i + 1]);
+            for(double value : values[i]) {
+                max = Math.max(max, Math.abs(value));
+            }
+        }
+        double tolerance = UtilEjml.EPS * max;
+
+        // Rows that haven't been picked as a pivot yet
+        int[] remaining = new int[n];
+        for(int i = 0; i < n; i++) {
+            remaining[i] = i;
+        }
+        int remainingCount = n;
+
+        int[][] uColumns = new int[n][];
+        double[][] uValues = new double[n][];
+        int[] pivotRows = new int[n];
+        int[] targets = new int[16];
+        int[] sources = new int[16];
+        double[] multipliers = new double[16];
+        int steps = 0;
+
+        for(int k = 0; k < n; k++) {
+            // Every column before k has been eliminated, so a cell in column k is always the first in its row
+            int best = -1;
+            double bestValue = 0;
+            for(int r = 0; r < remainingCount; r++) {
+                int row = remaining[r];
+                if(columns[row].length > 0 && columns[row][0] == k && Math.abs(values[row][0]) > bestValue) {
+                    best = r;
+                    bestValue = Math.abs(values[row][0]);
+                }
+            }
+            if(best == -1 || bestValue <= tolerance) return null;
+
+            int pivot = remaining[best];
+            remaining[best] = remaining[--remainingCount];
+            pivotRows[k] = pivot;
+            uColumns[k] = columns[pivot];
+            uValues[k] = values[pivot];
+
+            for(int r = 0; r < remainingCount; r++) {
+                int row = remaining[r];
+                if(columns[row].length == 0 || columns[row][0] != k) continue;
+
+                double multiplier = values[row][0] / uValues[k][0];
+                eliminate(columns, values, row, uColumns[k], uValues[k], multiplier);
+
+                if(steps == targets.length) {
+                    targets = Arrays.copyOf(targets, steps * 2);
+                    sources = Arrays.copyOf(sources, steps * 2);
+                    multipliers = Arrays.copyOf(multipliers, steps * 2);
+                }
+                targets[steps] = row;
+                sources[steps] = pivot;
+                multipliers[steps] = multiplier;
+                steps++;
+            }
+        }
+        return new SparseLU(n, uColumns, uValues, pivotRows,
+                Arrays.copyOf(targets, steps), Arrays.copyOf(sources, steps), Arrays.copyOf(multipliers, steps));
+    }
+
+    /**
+     * Replaces the row with row - multiplier * pivot, dropping the (now zero) first cell
+     */
+    private static void eliminate(int[][] columns, double[][] values, int row,
+                                  int[] pivotColumns, double[] pivotValues, double multiplier) {
+        int[] rowColumns = columns[row];
+        double[] rowValues = values[row];
+        int[] newColumns = new int[rowColumns.length + pivotColumns.length];
+        double[] newValues = new double[newColumns.length];
+        int size = 0;
+        int p = 1;
+        int q = 1;
+        while(p < rowColumns.length || q < pivotColumns.length) {
+            int columnP = p < rowColumns.length ? rowColumns[p] : Integer.MAX_VALUE;
+            int columnQ = q < pivotColumns.length ? pivotColumns[q] : Integer.MAX_VALUE;
+            double value;
+            int column;
+            if(columnP < columnQ) {
+                column = columnP;
+                value = rowValues[p++];
+            } else if(columnQ < columnP) {
+                column = columnQ;
+                value = -multiplier * pivotValues[q++];
+            } else {
+                column = columnP;
+                value = rowValues[p++] - multiplier * pivotValues[q++];
+            }
+            if(value != 0) {
+                newColumns[size] = column;
+                newValues[size] = value;
+                size++;
+            }
+        }
+        columns[row] = Arrays.copyOf(newColumns, size);
+        values[row] = Arrays.copyOf(newValues, size);
+    }
+
+    /**
+     * Solves A x = b. b is indexed by the original rows, and is overwritten.
+     * */
+    double[] solve(double[] b) {
+        for(int s = 0; s < mTargets.length; s++) {
+            b[mTargets[s]] -= mMultipliers[s] * b[mSources[s]];
+        }
+
+        double[] x = new double[mSize];
+        for(int k = mSize - 1; k >= 0; k--) {
+            int[] columns = mColumns[k];
+            double[] values = mValues[k];
+            double sum = b[mPivotRows[k]];
+            for(int p = 1; p < columns.length; p++) {
+                sum -= values[p] * x[columns[p]];
+            }
+            x[k] = sum / values[0];
+        }
+        return x;
+    }
+
+    double determinant() {
+        double det = 1;
+        for(int k = 0; k < mSize; k++) {
+            det *= mValues[k][0];
+        }
+
+        // Every cycle in the row permutation of length L contributes L - 1 swaps
+        boolean[] visited = new boolean[mSize];
+        boolean negative = false;
+        for(int k = 0; k < mSize; k++) {
+            if(visited[k]) continue;
+            int length = 0;
+            for(int j = k; !visited[j]; j = mPivotRows[j]) {
+                visited[j] = true;
+                length++;
+            }
+            if(length % 2 == 0) negative = !negative;
+        }
+        return negative ? -det : det;
+    }
+}
@@ -0,0 +1,257 @@
+package com.xlythe.math;
+
+import org.ejml.data.DenseMatrix64F;
+
+import java.util.Arrays;
+
+/**
+ * A matrix that's mostly zeros, in compressed sparse row (CSR) form. Only the non-zero cells are
+ * stored: their values, their columns, and where each row starts. A 1000x1000 identity matrix
+ * takes 16KB this way, instead of 8MB.
+ */
+final class SparseMatrix {
+    // Matrices smaller than this are cheap enough as they are
+    private static final int MIN_SIZE = 256;
+
+    // Above this fraction of non-zero cells, dense kernels are faster
+    private static final double MAX_DENSITY = 0.1;
+
+    final int numRows;
+    final int numCols;
+
+    // Row i's cells are at [rowStart[i], rowStart[i + 1]) in columns and values, sorted by column
+    final int[] rowStart;
+    final int[] columns;
+    final double[] values;
+
+    SparseMatrix(int numRows, int numCols, int[] rowStart, int[] columns, double[] values) {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.rowStart = rowStart;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * Returns true if a matrix of this size, with this many non-zero cells, is worth storing sparsely
+     * */
+    static boolean isWorthwhile(int numRows, int numCols, long nonZeros) {
+        long size = (long) numRows * numCols;
+        return size >= MIN_SIZE && nonZeros <= size * MAX_DENSITY;
+    }
+
+    int getNonZeroCount() {
+        return rowStart[numRows];
+    }
+
+    static SparseMatrix fromDense(DenseMatrix64F dense) {
+        Builder builder = new Builder(dense.numRows, dense.numCols, 16);
+        for(int i = 0; i < dense.numRows; i++) {
+            for(int j = 0; j < dense.numCols; j++) {
+                builder.add(j, dense.data[i * dense.numCols + j]);
+            }
+            builder.endRow();
+        }
+        return builder.build();
+    }
+
+    DenseMatrix64F toDense() {
+        DenseMatrix64F dense = new DenseMatrix64F(numRows, numCols);
+        for(int i = 0; i < numRows; i++) {
+            for(int p = rowStart[i]; p < rowStart[i + 1]; p++) {
+                dense.data[i * numCols + columns[p]] = values[p];
+            }
+        }
+        return dense;
+    }
+
+    SparseMatrix transpose() {
+        // Count the cells in each column, which become the rows
+        int[] start = new int[numCols + 1];
+        for(int p = 0; p < getNonZeroCount(); p++) {
+            start[columns[p] + 1]++;
+        }
+        for(int j = 0; j < numCols; j++) {
+            start[j + 1] += start[j];
+        }
+
+        // Walking the rows in order leaves each new row sorted by column
+        int[] next = Arrays.copyOf(start, numCols);
+        int[] newColumns = new int[getNonZeroCount()];
+        double[] newValues = new double[getNonZeroCount()];
+        for(int i = 0; i < numRows; i++) {
+            for(int p = rowStart[i]; p < rowStart[i + 1]; p++) {
+                int q = next[columns[p]]++;
+                newColumns[q] = i;
+                newValues[q] = values[p];
+            }
+        }
+        return new SparseMatrix(numCols, numRows, start, newColumns, newValues);
+    }
+
+    SparseMatrix scale(double scalar) {
+        double[] newValues = new double[getNonZeroCount()];
+        for(int p = 0; p < newValues.length; p++) {
+            newValues[p] = values[p] * scalar;
+        }
+        return new SparseMatrix(numRows, numCols, rowStart, columns, newValues);
+    }
+
+    /**
+     * Returns this + scale * other. Both must be the same size.
+     * */
+    SparseMatrix plus(SparseMatrix other, double scale) {
+        Builder builder = new Builder(numRows, numCols, getNonZeroCount() + other.getNonZeroCount());
+        for(int i = 0; i < numRows; i++) {
+            int p = rowStart[i];
+            int q = other.rowStart[i];
+            int pEnd = rowStart[i + 1];
+            int qEnd = other.rowStart[i + 1];
+            while(p < pEnd || q < qEnd) {
+                int columnP = p < pEnd ? columns[p] : Integer.MAX_VALUE;
+                int columnQ = q < qEnd ? other.columns[q] : Integer.MAX_VALUE;
+                if(columnP < columnQ) {
+                    builder.add(columnP, values[p++]);
+                } else if(columnQ < columnP) {
+                    builder.add(columnQ, scale * other.values[q++]);
+                } else {
+                    builder.add(columnP, values[p++] + scale * other.values[q++]);
+                }
+            }
+            builder.endRow();
+        }
+        return builder.build();
+    }
+
+    /**
+     * Adds scale * this to the dense matrix, in place. Both must be the same size.
+     * */
+    void addTo(DenseMatrix64F dense, double scale) {
+        for(int i = 0; i < numRows; i++) {
+            for(int p = rowStart[i]; p < rowStart[i + 1]; p++) {
+                dense.data[i * numCols + columns[p]] += scale * values[p];
+            }
+        }
+    }
+
+    /**
+     * Returns this * other, with rows built one at a time in a dense scratch row (Gustavson's method)
+     * */
+    SparseMatrix mult(SparseMatrix other) {
+        Builder builder = new Builder(numRows, other.numCols, getNonZeroCount() + other.getNonZeroCount());
+        double[] row = new double[other.numCols];
+        int[] seenInRow = new int[other.numCols];
+        Arrays.fill(seenInRow, -1);
+        int[] used = new int[other.numCols];
+        for(int i = 0; i < numRows; i++) {
+            int count = 0;
+            for(int p = rowStart[i]; p < rowStart[i + 1]; p++) {
+                int k = columns[p];
+                double a = values[p];
+                for(int q = other.rowStart[k]; q < other.rowStart[k + 1]; q++) {
+                    int j = other.columns[q];
+                    if(seenInRow[j] != i) {
+                        seenInRow[j] = i;
+                        row[j] = 0;
+                        used[count++] = j;
+                    }
+                    row[j] += a * other.values[q];
+                }
+            }
+            Arrays.sort(used, 0, count);
+            for(int c = 0; c < count; c++) {
+                builder.add(used[c], row[used[c]]);
+            }
+            builder.endRow();
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns this * dense
+     * */
+    DenseMatrix64F mult(DenseMatrix64F dense) {
+        int width = dense.numCols;
+        DenseMatrix64F result = new DenseMatrix64F(numRows, width);
+        for(int i = 0; i < numRows; i++) {
+            int rowC = i * width;
+            for(int p = rowStart[i]; p < rowStart[i + 1]; p++) {
+                double a = values[p];
+                int rowB = columns[p] * width;
+                for(int j = 0; j < width; j++) {
+                    result.data[rowC + j] += a * dense.data[rowB + j];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns dense * sparse
+     * */
+    static DenseMatrix64F mult(DenseMatrix64F dense, SparseMatrix sparse) {
+        int inner = dense.numCols;
+        int width = sparse.numCols;
+        DenseMatrix64F result = new DenseMatrix64F(dense.numRows, width);
+        for(int i = 0; i < dense.numRows; i++) {
+            int rowC = i * width;
+            for(int k = 0; k < inner; k++) {
+                double a = dense.data[i * inner + k];
+                for(int q = sparse.rowStart[k]; q < sparse.rowStart[k + 1]; q++) {
+                    result.data[rowC + sparse.columns[q]] += a * sparse.values[q];
+                }
+            }
+        }
+        return result;
+    }
+
+    static SparseMatrix identity(int size) {
+        Builder builder = new Builder(size, size, size);
+        for(int i = 0; i < size; i++) {
+            builder.add(i, 1);
+            builder.endRow();
+        }
+        return builder.build();
+    }
+
+    /**
+     * Collects a SparseMatrix one row at a time, left to right. Zeros are dropped.
+     * */
+    static final class Builder {
+        private final int mNumRows;
+        private final int mNumCols;
+        private final int[] mRowStart;
+        private int[] mColumns;
+        private double[] mValues;
+        private int mRow;
+        private int mSize;
+
+        Builder(int numRows, int numCols, int capacity) {
+            mNumRows = numRows;
+            mNumCols = numCols;
+            mRowStart = new int[numRows + 1];
+            mColumns = new int[Math.max(capacity, 4)];
+            mValues = new double[mColumns.length];
+        }
+
+        void add(int column, double value) {
+            if(value == 0) return;
+            if(mSize == mColumns.length) {
+                mColumns = Arrays.copyOf(mColumns, mSize * 2);
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            mColumns[mSize] = column;
+            mValues[mSize] = value;
+            mSize++;
+        }
+
+        void endRow() {
+            mRowStart[++mRow] = mSize;
+        }
+
+        SparseMatrix build() {
+            return new SparseMatrix(mNumRows, mNumCols, mRowStart,
+                    Arrays.copyOf(mColumns, mSize), Arrays.copyOf(mValues, mSize));
+        }
+    }
+}
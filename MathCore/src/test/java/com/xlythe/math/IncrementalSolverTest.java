@@ -0,0 +1,115 @@
+package com.xlythe.math;
+
+import org.javia.arity.SyntaxException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Types equations one character at a time and checks that IncrementalSolver
+ * agrees with Solver.solve() after every keystroke.
+ */
+public class IncrementalSolverTest {
+    // Typed with ASCII operators; see Solver.clean()
+    private static final String[] EQUATIONS = {
+            "1+2*3-4",
+            "8-2 -1",
+            "2-5 +1",
+            "2 - 5 + 1",
+            "12.5*4-(3+2)*2+7/2",
+            "2^-3+1",
+            "1e-5+1",
+            "-3+-4--5",
+            "sin(30)+cos(60)-2",
+            "5!-3!+1",
+            "6+2)*3-1",
+            "50+10%-5",
+            "sqrt(9)+sqrt(4)-1",
+    };
+
+    @Test
+    public void keystrokesMatchSolve() {
+        for(String equation : EQUATIONS) {
+            equation = Solver.clean(equation);
+            Solver solver = new Solver();
+            IncrementalSolver incremental = new IncrementalSolver(new Solver());
+            for(int i = 1; i <= equation.length(); i++) {
+                String prefix = equation.substring(0, i);
+                assertEquals(prefix, solve(solver, prefix), solve(incremental, prefix));
+            }
+        }
+    }
+
+    @Test
+    public void backspaceMatchesSolve() {
+        for(String equation : EQUATIONS) {
+            equation = Solver.clean(equation);
+            Solver solver = new Solver();
+            IncrementalSolver incremental = new IncrementalSolver(new Solver());
+            for(int i = equation.length(); i > 0; i--) {
+                String prefix = equation.substring(0, i);
+                assertEquals(prefix, solve(solver, prefix), solve(incremental, prefix));
+            }
+        }
+    }
+
+    @Test
+    public void spacesDoNotSplitTerms() throws SyntaxException {
+        IncrementalSolver incremental = new IncrementalSolver(new Solver());
+        assertEquals("5", incremental.solve(Solver.clean("8-2 -1")));
+        incremental.reset();
+        assertEquals(new Solver().solve(Solver.clean("2-5 +1")), incremental.solve(Solver.clean("2-5 +1")));
+    }
+
+    @Test
+    public void wholeEquationsAreCached() throws SyntaxException {
+        Solver solver = new Solver();
+        IncrementalSolver incremental = new IncrementalSolver(solver);
+
+        // 1+ and 1 are the same equation once the trailing operator is dropped, and so on
+        String equation = Solver.clean("1+2*3-4+5");
+        for(int i = 1; i <= equation.length(); i++) {
+            incremental.solve(equation.substring(0, i));
+        }
+        assertEquals(5, solver.getCacheMissCount());
+        assertEquals(4, solver.getCacheHitCount());
+
+        // Repeated input, as the preview sees when the text is set again
+        incremental.solve(equation);
+        assertEquals(5, solver.getCacheMissCount());
+        assertEquals(5, solver.getCacheHitCount());
+
+        // And it's the same entry solve() uses
+        solver.solve(equation);
+        assertEquals(5, solver.getCacheMissCount());
+        assertEquals(6, solver.getCacheHitCount());
+    }
+
+    @Test
+    public void changingBaseStartsOver() throws SyntaxException {
+        Solver solver = new Solver();
+        IncrementalSolver incremental = new IncrementalSolver(solver);
+        incremental.solve("10+1");
+        solver.setBase(Base.HEXADECIMAL);
+
+        Solver hexadecimal = new Solver();
+        hexadecimal.setBase(Base.HEXADECIMAL);
+        assertEquals(hexadecimal.solve("10+1"), incremental.solve("10+1"));
+    }
+
+    private static String solve(Solver solver, String input) {
+        try {
+            return solver.solve(input);
+        } catch(SyntaxException e) {
+            return "error";
+        }
+    }
+
+    private static String solve(IncrementalSolver solver, String input) {
+        try {
+            return solver.solve(input);
+        } catch(SyntaxException e) {
+            return "error";
+        }
+    }
+}
@@ -4,19 +4,21 @@ import android.os.AsyncTask;
 
 import org.javia.arity.SyntaxException;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
 public class GraphModule extends Module {
-    private static final String X = "X";
-    private static final String Y = "Y";
     private float mMinY;
     private float mMaxY;
     private float mMinX;
     private float mMaxX;
     private float mZoomLevel = 1f;
+    private int mWidth;
+    private int mHeight;
+
+    // The newest task for each listener. Tasks run side by side, so older ones are cancelled
+    // rather than left to finish after (and overwrite) a newer result.
+    private final Map<OnGraphUpdatedListener, GraphTask> mTasks = new HashMap<>();
 
     public GraphModule(Solver solver) {
         super(solver);
@@ -37,7 +39,15 @@ public class GraphModule extends Module {
     }
 
     /**
-     * Given a function, updateGraph will attempt to build a list of points that can be graphed.
+     * The size of the graph on screen, in pixels. Curves are sampled more finely on larger views.
+     * */
+    public void setResolution(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * Given a function, updateGraph will attempt to build a series of points that can be graphed.
      * */
     public AsyncTask updateGraph(String text, OnGraphUpdatedListener l) {
         boolean endsWithOperator = text.length() != 0 &&
@@ -48,196 +58,58 @@ public class GraphModule extends Module {
             return null;
         }
 
-        GraphTask newTask = new GraphTask(getSolver(), mMinY, mMaxY, mMinX, mMaxX, mZoomLevel, l);
-        newTask.execute(text);
+        GraphTask oldTask = mTasks.get(l);
+        if(oldTask != null) {
+            oldTask.cancel(true);
+        }
+
+        // The default executor runs one task at a time, so one slow graph would hold up the rest
+        GraphTask newTask = new GraphTask(getSolver(), mMinY, mMaxY, mMinX, mMaxX, mZoomLevel, mWidth, mHeight, l);
+        mTasks.put(l, newTask);
+        newTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, text);
         return newTask;
     }
 
-    class GraphTask extends AsyncTask<String, String, List<Point>> {
-        private final Solver mSolver;
+    class GraphTask extends AsyncTask<String, String, PointSeries> implements GraphSampler.Cancellable {
+        private final GraphSampler mSampler;
         private final OnGraphUpdatedListener mListener;
-        private final float mMinY;
-        private final float mMaxY;
-        private final float mMinX;
-        private final float mMaxX;
-        private final float mZoomLevel;
 
         public GraphTask(Solver solver, float minY, float maxY, float minX, float maxX,
-                         float zoomLevel, OnGraphUpdatedListener l) {
-            mSolver = solver;
+                         float zoomLevel, int width, int height, OnGraphUpdatedListener l) {
+            mSampler = new GraphSampler(solver, minY, maxY, minX, maxX, zoomLevel, this);
+            mSampler.setResolution(width, height);
             mListener = l;
-            mMinY = minY;
-            mMaxY = maxY;
-            mMinX = minX;
-            mMaxX = maxX;
-            mZoomLevel = zoomLevel;
         }
 
         @Override
-        protected List<Point> doInBackground(String... eq) {
-            String[] equations = eq[0].split("=");
+        protected PointSeries doInBackground(String... eq) {
             try {
-                if (equations.length >= 2) {
-                    String leftEquation = mSolver.getBaseModule().changeBase(equations[0],
-                            mSolver.getBaseModule().getBase(), Base.DECIMAL);
-                    String rightEquation = mSolver.getBaseModule().changeBase(equations[1],
-                            mSolver.getBaseModule().getBase(), Base.DECIMAL);
-                    return graph(leftEquation, rightEquation);
-                } else {
-                    String equation = mSolver.getBaseModule().changeBase(eq[0],
-                            mSolver.getBaseModule().getBase(), Base.DECIMAL);
-                    return graph(equation);
-                }
+                return mSampler.sample(eq[0]);
             } catch(SyntaxException e) {
                 cancel(true);
                 return null;
             }
         }
 
-        public List<Point> graph(String equation) {
-            final LinkedList<Point> series = new LinkedList<Point>();
-            mSolver.pushFrame();
-
-            final float delta = 0.1f * mZoomLevel;
-            for(float x = mMinX; x <= mMaxX; x += delta) {
-                if(isCancelled()) {
-                    return null;
-                }
-
-                try {
-                    mSolver.define(X, x);
-                    float y = (float) mSolver.eval(equation);
-                    series.add(new Point(x, y));
-                } catch(SyntaxException e) {}
-            }
-            mSolver.popFrame();
-
-            return Collections.unmodifiableList(series);
-        }
-
-        public List<Point> graph(String leftEquation, String rightEquation) {
-            List<Point> series = new LinkedList<>();
-            mSolver.pushFrame();
-
-            final float delta = 0.1f * mZoomLevel;
-            if(leftEquation.equals(Y) && !rightEquation.contains(Y)) {
-                for(float x = mMinX; x <= mMaxX; x += delta) {
-                    if(isCancelled()) {
-                        return null;
-                    }
-
-                    try {
-                        mSolver.define(X, x);
-                        float y = (float) mSolver.eval(rightEquation);
-                        series.add(new Point(x, y));
-                    } catch(SyntaxException e) {}
-                }
-            } else if(leftEquation.equals(X) && !rightEquation.contains(X)) {
-                for(float y = mMinY; y <= mMaxY; y += delta) {
-                    if(isCancelled()) {
-                        return null;
-                    }
-
-                    try {
-                        mSolver.define(Y, y);
-                        float x = (float) mSolver.eval(rightEquation);
-                        series.add(new Point(x, y));
-                    } catch(SyntaxException e) {}
-                }
-            } else if(rightEquation.equals(Y) && !leftEquation.contains(Y)) {
-                for(float x = mMinX; x <= mMaxX; x += delta) {
-                    if(isCancelled()) {
-                        return null;
-                    }
-
-                    try {
-                        mSolver.define(X, x);
-                        float y = (float) mSolver.eval(leftEquation);
-                        series.add(new Point(x, y));
-                    } catch(SyntaxException e) {}
-                }
-            } else if(rightEquation.equals(X) && !leftEquation.contains(X)) {
-                for(float y = mMinY; y <= mMaxY; y += delta) {
-                    if(isCancelled()) {
-                        return null;
-                    }
-
-                    try {
-                        mSolver.define(Y, y);
-                        float x = (float) mSolver.eval(leftEquation);
-                        series.add(new Point(x, y));
-                    } catch(SyntaxException e) {}
-                }
-            } else {
-                for(float x = mMinX; x <= mMaxX; x += 0.1f * mZoomLevel) {
-                    for(float y = mMaxY; y >= mMinY; y -= 0.1f * mZoomLevel) {
-                        if(isCancelled()) {
-                            return null;
-                        }
-
-                        try {
-                            mSolver.define(X, x);
-                            mSolver.define(Y, y);
-                            float leftSide = (float) mSolver.eval(leftEquation);
-                            float rightSide = (float) mSolver.eval(rightEquation);
-
-                            // Should be close to 0 if they're similar
-                            float condensedResult = Math.abs(leftSide - rightSide);
-                            if (condensedResult < 0.02f) {
-                                series.add(new Point(x, y));
-                            }
-                        } catch(SyntaxException e) {}
-                    }
-                }
-
-                series = sort(series);
-            }
-
-            mSolver.popFrame();
-
-            return Collections.unmodifiableList(series);
+        @Override
+        protected void onPostExecute(PointSeries result) {
+            finish();
+            mListener.onGraphUpdated(result);
         }
 
-        private List<Point> sort(List<Point> data) {
-            List<Point> sorted = new ArrayList<>(data.size());
-            Point key = null;
-            while(!data.isEmpty()) {
-                if(key == null) {
-                    key = data.get(0);
-                    data.remove(0);
-                    sorted.add(key);
-                }
-                key = findClosestPoint(key, data);
-                data.remove(key);
-                sorted.add(key);
-            }
-            return sorted;
+        @Override
+        protected void onCancelled() {
+            finish();
         }
 
-        private Point findClosestPoint(Point key, List<Point> data) {
-            Point closestPoint = null;
-            for(Point p : data) {
-                if(closestPoint == null) closestPoint = p;
-                if(getDistance(key, p) < getDistance(key, closestPoint)) closestPoint = p;
+        private void finish() {
+            if(mTasks.get(mListener) == this) {
+                mTasks.remove(mListener);
             }
-            return closestPoint;
-        }
-
-        private double getDistance(Point a, Point b) {
-            return Math.sqrt(square(a.getX() - b.getX()) + square(a.getY() - b.getY()));
-        }
-
-        private double square(double val) {
-            return val * val;
-        }
-
-        @Override
-        protected void onPostExecute(List<Point> result) {
-            mListener.onGraphUpdated(result);
         }
     }
 
     public static interface OnGraphUpdatedListener {
-        public void onGraphUpdated(List<Point> result);
+        public void onGraphUpdated(PointSeries result);
     }
 }
@@ -29,7 +29,8 @@ import com.android2.calculator3.view.MatrixTransposeView;
 import com.android2.calculator3.view.MatrixView;
 import com.xlythe.math.BaseModule;
 import com.xlythe.math.EquationFormatter;
-import com.xlythe.math.Point;
+import com.xlythe.math.GraphModule;
+import com.xlythe.math.PointSeries;
 import com.xlythe.math.Solver;
 import com.xlythe.math.GraphModule.OnGraphUpdatedListener;
 
@@ -37,7 +38,6 @@ import org.javia.arity.Symbols;
 import org.javia.arity.SyntaxException;
 
 import java.text.DecimalFormatSymbols;
-import java.util.List;
 import java.util.Locale;
 
 public class Logic {
@@ -60,11 +60,12 @@ public class Logic {
     private Graph mGraph;
     private Listener mListener;
     private final Solver mSolver = new Solver();
+    private final GraphModule mGraphModule = new GraphModule(mSolver);
     private final CalculatorExpressionTokenizer mTokenizer;
     private OnGraphUpdatedListener mOnGraphUpdateListener = new OnGraphUpdatedListener() {
         @Override
-        public void onGraphUpdated(List<Point> result) {
-            mGraph.setData(result);
+        public void onGraphUpdated(PointSeries result) {
+            mGraph.setData(result.toList());
         }
     };
 
@@ -283,19 +284,19 @@ public class Logic {
     }
 
     public void setDomain(float min, float max) {
-        mSolver.getGraphModule().setDomain(min, max);
+        mGraphModule.setDomain(min, max);
     }
 
     public void setRange(float min, float max) {
-        mSolver.getGraphModule().setRange(min, max);
+        mGraphModule.setRange(min, max);
     }
 
     public void setZoomLevel(float level) {
-        mSolver.getGraphModule().setZoomLevel(level);
+        mGraphModule.setZoomLevel(level);
     }
 
     public void graph() {
-        mSolver.getGraphModule().updateGraph(getText(), mOnGraphUpdateListener);
+        mGraphModule.updateGraph(getText(), mOnGraphUpdateListener);
     }
 
     public BaseModule getBaseModule() {
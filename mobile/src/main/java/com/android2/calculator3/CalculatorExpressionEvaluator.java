@@ -18,16 +18,19 @@ package com.android2.calculator3;
 import android.text.TextUtils;
 
 import com.xlythe.math.Base;
+import com.xlythe.math.IncrementalSolver;
 import com.xlythe.math.Solver;
 
 import org.javia.arity.SyntaxException;
 
 public class CalculatorExpressionEvaluator {
     private final Solver mSolver;
+    private final IncrementalSolver mIncrementalSolver;
     private final CalculatorExpressionTokenizer mTokenizer;
 
     public CalculatorExpressionEvaluator(CalculatorExpressionTokenizer tokenizer) {
         mSolver = new Solver();
+        mIncrementalSolver = new IncrementalSolver(mSolver);
         mTokenizer = tokenizer;
     }
 
@@ -48,7 +51,8 @@ public class CalculatorExpressionEvaluator {
         }
 
         try {
-            String result = mSolver.solve(expr);
+            // Called on every keystroke, so only reevaluate what changed
+            String result = mIncrementalSolver.solve(expr);
             result = mTokenizer.getLocalizedExpression(result);
             callback.onEvaluate(expr, result, MatrixCalculator.INVALID_RES_ID);
         } catch (SyntaxException e) {
@@ -10,10 +10,9 @@ import com.android2.calculator3.view.GraphView.PanListener;
 import com.android2.calculator3.view.GraphView.ZoomListener;
 import com.xlythe.math.GraphModule;
 import com.xlythe.math.GraphModule.OnGraphUpdatedListener;
-import com.xlythe.math.Point;
+import com.xlythe.math.PointSeries;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,9 +32,9 @@ public class GraphController implements PanListener, ZoomListener {
 
     private final Handler mHandler = new Handler();
 
-    private static final Map<String, List<Point>> mCachedEquations = new LinkedHashMap<String, List<Point>>(MAX_CACHE_SIZE, 1f, true) {
+    private static final Map<String, PointSeries> mCachedEquations = new LinkedHashMap<String, PointSeries>(MAX_CACHE_SIZE, 1f, true) {
         @Override
-        protected boolean removeEldestEntry(Map.Entry<String, List<Point>> eldest) {
+        protected boolean removeEldestEntry(Map.Entry<String, PointSeries> eldest) {
             return size() > MAX_CACHE_SIZE;
         }
     };
@@ -60,7 +59,7 @@ public class GraphController implements PanListener, ZoomListener {
     }
 
     public void addNewGraph(String equation) {
-        mMostRecentGraph = new GraphView.Graph(equation, GRAPH_COLOR, Collections.EMPTY_LIST);
+        mMostRecentGraph = new GraphView.Graph(equation, GRAPH_COLOR, new PointSeries(0));
         mMainGraphView.addGraph(mMostRecentGraph);
         layoutBeforeGraphing(mMostRecentGraph);
     }
@@ -112,7 +111,7 @@ public class GraphController implements PanListener, ZoomListener {
         invalidateModule();
         return mGraphModule.updateGraph(graph.getFormula(), new OnGraphUpdatedListener() {
             @Override
-            public void onGraphUpdated(List<Point> result) {
+            public void onGraphUpdated(PointSeries result) {
                 mCachedEquations.put(graph.getFormula(), result);
                 graph.setData(mCachedEquations.get(graph.getFormula()));
                 mMainGraphView.postInvalidate();
@@ -128,6 +127,7 @@ public class GraphController implements PanListener, ZoomListener {
         mGraphModule.setDomain(mMainGraphView.getXAxisMin(), mMainGraphView.getXAxisMax());
         mGraphModule.setRange(mMainGraphView.getYAxisMin(), mMainGraphView.getYAxisMax());
         mGraphModule.setZoomLevel(mMainGraphView.getZoomLevel());
+        mGraphModule.setResolution(mMainGraphView.getWidth(), mMainGraphView.getHeight());
         }
 
 @Override
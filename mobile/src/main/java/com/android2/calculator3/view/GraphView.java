@@ -20,6 +20,7 @@ import android.view.ViewConfiguration;
 import com.android2.calculator3.HistoryAdapter;
 import com.android2.calculator3.R;
 import com.xlythe.math.Point;
+import com.xlythe.math.PointSeries;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
@@ -463,7 +464,7 @@ public class GraphView extends View {
 
         // Create a path to draw smooth arcs
         for (Graph graph : mData) {
-            if (graph.visible && graph.data.size() != 0) {
+            if (graph.visible && !graph.data.isEmpty()) {
                 mGraphPaint.setColor(graph.color);
                 if (mDrawingAlgorithm == LINES) {
                     drawWithStraightLines(graph.data, canvas, mGraphPaint);
@@ -481,37 +482,43 @@ public class GraphView extends View {
         }
     }
 
-    private void drawWithStraightLines(List<Point> data, Canvas canvas, Paint paint) {
-        Point previousPoint = null;
-        for (Point currentPoint : data) {
-            if (previousPoint == null) {
-                previousPoint = currentPoint;
-                continue;
-            }
-
-            int aX = getRawX(previousPoint);
-            int aY = getRawY(previousPoint);
-            int bX = getRawX(currentPoint);
-            int bY = getRawY(currentPoint);
+    // Reused between frames, so drawing doesn't allocate
+    private float[] mLines = new float[0];
 
-            previousPoint = currentPoint;
+    private void drawWithStraightLines(PointSeries data, Canvas canvas, Paint paint) {
+        // Collect every segment first, then draw them all in one call
+        int size = data.size();
+        if (mLines.length < size * 4) {
+            mLines = new float[size * 4];
+        }
+        int count = 0;
+        for (int i = 1; i < size; i++) {
+            int aX = getRawX(data.getX(i - 1));
+            int aY = getRawY(data.getY(i - 1));
+            int bX = getRawX(data.getX(i));
+            int bY = getRawY(data.getY(i));
 
+            // Also skips breaks, which are at NaN
             if (tooFar(aX, aY, bX, bY)) continue;
 
-            canvas.drawLine(aX, aY, bX, bY, paint);
+            mLines[count++] = aX;
+            mLines[count++] = aY;
+            mLines[count++] = bX;
+            mLines[count++] = bY;
         }
+        canvas.drawLines(mLines, 0, count, paint);
     }
 
-    private void drawDots(List<Point> data, Canvas canvas, Paint paint) {
-        for (Point p : data) {
-            canvas.drawPoint(getRawX(p), getRawY(p), paint);
+    private void drawDots(PointSeries data, Canvas canvas, Paint paint) {
+        for (int i = 0; i < data.size(); i++) {
+            canvas.drawPoint(getRawX(data.getX(i)), getRawY(data.getY(i)), paint);
         }
     }
 
-    private List<Point> curveCachedData;
-    private List<Point> curveCachedMutatedData;
+    private PointSeries curveCachedData;
+    private PointSeries curveCachedMutatedData;
 
-    private void drawWithCurves(List<Point> data, Canvas canvas, Paint paint) {
+    private void drawWithCurves(PointSeries data, Canvas canvas, Paint paint) {
         if (curveCachedData == data) {
             drawWithStraightLines(curveCachedMutatedData, canvas, paint);
             return;
@@ -519,14 +526,7 @@ public class GraphView extends View {
 
         float tension = 0.5f;
         int numOfSegments = 16;
-        List<Point> mutatedData = new ArrayList<>(data);
-        List<Point> newData = new ArrayList<>(data.size());
-
-        // The algorithm require a previous and next point to the actual point array.
-        // Duplicate first points to beginning, end points to end
-        mutatedData.add(0, mutatedData.get(0));
-        mutatedData.add(mutatedData.get(mutatedData.size() - 1));
-
+        PointSeries newData = new PointSeries(Math.max(0, data.size() - 3) * (numOfSegments + 1));
 
         // ok, lets start..
 
@@ -536,11 +536,11 @@ public class GraphView extends View {
             for (int t=0; t <= numOfSegments; t++) {
 
                 // calc tension vectors
-                float t1x = (data.get(i+1).getX() - data.get(i-1).getX()) * tension;
-                float t2x = (data.get(i+2).getX() - data.get(i).getX()) * tension;
+                float t1x = (data.getX(i+1) - data.getX(i-1)) * tension;
+                float t2x = (data.getX(i+2) - data.getX(i)) * tension;
 
-                float t1y = (data.get(i+1).getY() - data.get(i-1).getY()) * tension;
-                float t2y = (data.get(i+2).getY() - data.get(i).getY()) * tension;
+                float t1y = (data.getY(i+1) - data.getY(i-1)) * tension;
+                float t2y = (data.getY(i+2) - data.getY(i)) * tension;
 
                 // calc step
                 float st = t / numOfSegments;
@@ -552,11 +552,11 @@ public class GraphView extends View {
                 double c4 =       Math.pow(st, 3)  -     Math.pow(st, 2);
 
                 // calc x and y cords with common control vectors
-                float x = (float) (c1 * data.get(i).getX() + c2 * data.get(i+1).getX() + c3 * t1x + c4 * t2x);
-                float y = (float) (c1 * data.get(i).getY() + c2 * data.get(i+1).getY() + c3 * t1y + c4 * t2y);
+                float x = (float) (c1 * data.getX(i) + c2 * data.getX(i+1) + c3 * t1x + c4 * t2x);
+                float y = (float) (c1 * data.getY(i) + c2 * data.getY(i+1) + c3 * t1y + c4 * t2y);
 
                 //store points in array
-                newData.add(new Point(x, y));
+                newData.add(x, y);
 
             }
         }
@@ -567,8 +567,8 @@ public class GraphView extends View {
         drawWithStraightLines(newData, canvas, paint);
     }
 
-    private int getRawX(Point p) {
-        if (p == null || Double.isNaN(p.getX()) || Double.isInfinite(p.getX())) return -1;
+    private int getRawX(float x) {
+        if (Float.isNaN(x) || Float.isInfinite(x)) return -1;
 
         // The left line is at pos
         float leftLine = (mInlineNumbers ? 0 : mLineMargin) + mRemainderX;
@@ -577,13 +577,13 @@ public class GraphView extends View {
         // And changes at a rate of
         float slope = mLineMargin / mZoomLevel;
         // Put it all together
-        int pos = (int) (slope * (p.getX() - val) + leftLine);
+        int pos = (int) (slope * (x - val) + leftLine);
 
         return pos;
     }
 
-    private int getRawY(Point p) {
-        if (p == null || Double.isNaN(p.getY()) || Double.isInfinite(p.getY())) return -1;
+    private int getRawY(float y) {
+        if (Float.isNaN(y) || Float.isInfinite(y)) return -1;
 
         // The top line is at pos
         float topLine = (mInlineNumbers ? 0 : mLineMargin) + mRemainderY;
@@ -592,7 +592,7 @@ public class GraphView extends View {
         // And changes at a rate of
         float slope = mLineMargin / mZoomLevel;
         // Put it all together
-        int pos = (int) (-slope * (p.getY() - val) + topLine);
+        int pos = (int) (-slope * (y - val) + topLine);
 
         return pos;
     }
@@ -840,10 +840,10 @@ public class GraphView extends View {
     public static class Graph {
         private String formula;
         private int color;
-        private List<Point> data;
+        private PointSeries data;
         private boolean visible = true;
 
-        public Graph(String formula, int color, List<Point> data) {
+        public Graph(String formula, int color, PointSeries data) {
             this.formula = formula;
             this.color = color;
             this.data = data;
@@ -865,11 +865,11 @@ public class GraphView extends View {
             return color;
         }
 
-        public void setData(List<Point> data) {
+        public void setData(PointSeries data) {
             this.data = data;
         }
 
-        public List<Point> getData() {
+        public PointSeries getData() {
             return data;
         }
 